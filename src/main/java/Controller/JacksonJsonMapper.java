@@ -0,0 +1,99 @@
+package Controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import Model.Account;
+import Model.Message;
+import Util.JsonUtil;
+import io.javalin.json.JsonMapper;
+
+/**
+ * Javalin JsonMapper backed by the shared mapper in JsonUtil. The readers and writers for Account, Message and
+ * List&lt;Message&gt; are registered up front; any other type gets its reader or writer built once and cached.
+ */
+public class JacksonJsonMapper implements JsonMapper
+{
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public JacksonJsonMapper()
+    {
+        writers.put(Account.class, JsonUtil.ACCOUNT_WRITER);
+        writers.put(Message.class, JsonUtil.MESSAGE_WRITER);
+        writers.put(JsonUtil.MESSAGE_LIST_TYPE, JsonUtil.MESSAGE_LIST_WRITER);
+        readers.put(Account.class, JsonUtil.ACCOUNT_READER);
+        readers.put(Message.class, JsonUtil.MESSAGE_READER);
+        readers.put(JsonUtil.MESSAGE_LIST_TYPE, JsonUtil.MESSAGE_LIST_READER);
+    }
+
+    @Override
+    public String toJsonString(Object obj, Type type)
+    {
+        try
+        {
+            return writerFor(type).writeValueAsString(obj);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type)
+    {
+        try
+        {
+            return new ByteArrayInputStream(writerFor(type).writeValueAsBytes(obj));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType)
+    {
+        try
+        {
+            return readerFor(targetType).readValue(json);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType)
+    {
+        try
+        {
+            return readerFor(targetType).readValue(json);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectWriter writerFor(Type type)
+    {
+        return writers.computeIfAbsent(type, t -> JsonUtil.MAPPER.writerFor(JsonUtil.MAPPER.constructType(t)));
+    }
+
+    private ObjectReader readerFor(Type type)
+    {
+        return readers.computeIfAbsent(type, t -> JsonUtil.MAPPER.readerFor(JsonUtil.MAPPER.constructType(t)));
+    }
+}
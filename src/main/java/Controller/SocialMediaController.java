@@ -1,28 +1,91 @@
 package Controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 
+import DAO.AccountRepository;
+import DAO.DataAccessException;
+import DAO.DatabaseUnavailableException;
+import DAO.StorageEngine;
 import Model.Account;
+import Model.BulkMessageResult;
 import Model.Message;
+import Model.MessagePage;
 import Service.AccountService;
 import Service.MessageService;
+import Util.Config;
+import Util.JsonUtil;
+import Util.Metrics;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.javalin.Javalin;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.Header;
 
 public class SocialMediaController
 {
+    /**
+     * How Jetty runs request handlers, set with socialmedia.server.executionMode.
+     */
+    public enum ExecutionMode
+    {
+        /**
+         * Handlers run on a bounded pool of platform threads, so at most server.maxThreads requests are handled at
+         * once and requests blocked on JDBC hold pool threads.
+         */
+        PLATFORM,
+        /**
+         * Each request is handled on its own virtual thread, which releases its carrier thread while it waits.
+         */
+        VIRTUAL
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(SocialMediaController.class);
+
+    /**
+     * Response header carrying the cursor for the next page of a paginated message list.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = Config.getInt("messages.defaultPageSize", 100);
+    private static final int MAX_PAGE_SIZE = Config.getInt("messages.maxPageSize", 1000);
+    /**
+     * Number of bulk import entries validated and inserted per transaction.
+     */
+    private static final int BULK_CHUNK_SIZE = Config.getInt("messages.bulk.chunkSize", 1000);
 
     private AccountService accountService;
     private MessageService messageService;
+    /**
+     * The most entries one bulk import may hold, set with socialmedia.messages.bulk.maxEntries (default 1000000).
+     * Results are held until the body has been read, at 4 bytes per entry, so this bounds an import's memory use.
+     */
+    private final int bulkMaxEntries = Math.max(1, Config.getInt("messages.bulk.maxEntries", 1_000_000));
 
     public SocialMediaController()
     {
-        accountService = new AccountService();
-        messageService = new MessageService();
+        // Both services share one account repository so accounts registered through the AccountService are
+        // immediately known to the MessageService's account existence check.
+        StorageEngine engine = StorageEngine.configured();
+        AccountRepository accountRepository = engine.createAccountRepository();
+        accountService = new AccountService(accountRepository);
+        messageService = new MessageService(engine.createMessageRepository(), accountRepository);
     }
 
     /**
@@ -32,19 +95,119 @@ public class SocialMediaController
      */
     public Javalin startAPI()
     {
-        Javalin app = Javalin.create();
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(new JacksonJsonMapper());
+            config.jetty.server(this::createServer);
+            config.requestLogger.http(this::recordRequest);
+        });
+        // Handlers hand their database work to the services' asynchronous methods through context.future, so Jetty
+        // threads are free while JDBC runs on the DatabaseExecutor. The bulk import stays synchronous because it
+        // reads the request body while it imports. Database failures reach the exception handlers below and are
+        // sent as 503 or 500 status.
         app.post("register", this::registerAccountHandler);
         app.post("login", this::loginHandler);
         app.post("messages", this::addMessageHandler);
+        app.post("messages/bulk", this::addMessagesBulkHandler);
         app.get("messages", this::getAllMessagesHandler);
         app.get("messages/{message_id}", this::getMessageByIDHandler);
         app.delete("messages/{message_id}", this::deleteMessageByIDHandler);
         app.patch("messages/{message_id}", this::updateMessageByIDHandler);
         app.get("accounts/{account_id}/messages", this::getMessagesByAccountIDHandler);
+        app.get("metrics", this::metricsHandler);
+        app.exception(RejectedExecutionException.class, this::rejectedHandler);
+        app.exception(DatabaseUnavailableException.class, this::databaseUnavailableHandler);
+        app.exception(DataAccessException.class, this::dataAccessHandler);
+        app.events(event -> event.serverStopped(messageService::close));
 
         return app;
     }
 
+    /**
+     * Builds the Jetty server for the execution mode in socialmedia.server.executionMode (default PLATFORM).
+     * Jetty accepts connections and selects on pooled platform threads in both modes; in VIRTUAL mode it hands each
+     * request to a new virtual thread instead of a pool thread.
+     *
+     * In PLATFORM mode handlers pass their database work to the DatabaseExecutor, which runs it on one platform
+     * thread per pooled connection and queues the rest in its bounded queue, so Jetty's threads never block on
+     * JDBC. In VIRTUAL mode the DatabaseExecutor runs that work on the request's own virtual thread instead. The
+     * number of requests running JDBC at once is then capped only by the ConnectionPool, whose fair semaphore has
+     * one permit per connection; waiting on it parks the virtual thread without pinning its carrier, so requests
+     * beyond the pool size queue there. A request that waits longer than socialmedia.pool.acquireTimeoutMillis for
+     * a connection fails with 503 status, so in VIRTUAL mode that setting is the longest a request may queue for the
+     * database.
+     * @return The server Javalin should start
+     */
+    private Server createServer()
+    {
+        ExecutionMode mode = Config.getEnum("server.executionMode", ExecutionMode.class, ExecutionMode.PLATFORM);
+        QueuedThreadPool threadPool = new QueuedThreadPool(Config.getInt("server.maxThreads", 250),
+                Config.getInt("server.minThreads", 8));
+        threadPool.setName("JettyServerThreadPool");
+        threadPool.setUseVirtualThreads(mode == ExecutionMode.VIRTUAL);
+        return new Server(threadPool);
+    }
+
+    /**
+     * Records a finished request in Metrics under the path pattern of the endpoint that handled it, once its response
+     * is complete, including requests whose handler finished asynchronously through context.future. Requests that
+     * matched no endpoint never leave the BEFORE stage and are all recorded under one "unmatched" route.
+     * @param context The context for the HTTP request and response
+     * @param executionTimeMs How long the request took, as measured by Javalin
+     */
+    private void recordRequest(Context context, Float executionTimeMs)
+    {
+        String route = context.handlerType() == HandlerType.BEFORE ? "unmatched" : context.endpointHandlerPath();
+        Metrics.recordRequest(context.method().name(), route, context.statusCode(),
+                (long) (executionTimeMs * 1000));
+    }
+
+    /**
+     * Handles requests for the service's metrics. Always sends client 200 status and every metric in the Prometheus
+     * text exposition format.
+     * @param context The context for the HTTP request and response
+     */
+    private void metricsHandler(Context context)
+    {
+        context.status(200);
+        context.contentType("text/plain; version=0.0.4; charset=utf-8");
+        context.result(Metrics.render());
+    }
+
+    /**
+     * Sends client 503 status when a request's database work could not be queued, either because the
+     * DatabaseExecutor's queue is full or because message ingest is enabled and its queue stayed full.
+     * @param e The rejection
+     * @param context The context for the HTTP request and response
+     */
+    private void rejectedHandler(RejectedExecutionException e, Context context)
+    {
+        context.status(503);
+    }
+
+    /**
+     * Sends client 503 status when the database could not answer in time, such as when no pooled connection freed
+     * up within socialmedia.pool.acquireTimeoutMillis. The client may retry.
+     * @param e The failure
+     * @param context The context for the HTTP request and response
+     */
+    private void databaseUnavailableHandler(DatabaseUnavailableException e, Context context)
+    {
+        logger.warn(context.method() + " " + context.path() + " failed: " + e.getCause().getMessage());
+        context.status(503);
+    }
+
+    /**
+     * Sends client 500 status when the database failed to run a request's statements, so a failure is never sent
+     * as an empty result or as a rejected request.
+     * @param e The failure
+     * @param context The context for the HTTP request and response
+     */
+    private void dataAccessHandler(DataAccessException e, Context context)
+    {
+        logger.error(context.method() + " " + context.path() + " failed", e);
+        context.status(500);
+    }
+
     /**
      * Handles registration for new accounts. Sends client 200 status and JSON of new account if registration succeeds,
      * otherwise sends 400 status.
@@ -52,20 +215,20 @@ public class SocialMediaController
      */
     private void registerAccountHandler(Context context)
     {
-        ObjectMapper mapper = new ObjectMapper();
         try
         {
-            Account account = mapper.readValue(context.body(), Account.class);
-            Account registered = accountService.addAccount(account);
-            if (registered == null)
-            {
-                context.status(400);
-            }
-            else
-            {
-                context.status(200);
-                context.json(registered);
-            }
+            Account account = JsonUtil.ACCOUNT_READER.readValue(context.body());
+            context.future(() -> accountService.addAccountAsync(account).thenAccept(registered -> {
+                if (registered == null)
+                {
+                    context.status(400);
+                }
+                else
+                {
+                    context.status(200);
+                    context.json(registered);
+                }
+            }));
         }
         catch (JsonProcessingException e)
         {
@@ -81,20 +244,20 @@ public class SocialMediaController
      */
     private void loginHandler(Context context)
     {
-        ObjectMapper mapper = new ObjectMapper();
         try
         {
-            Account account = mapper.readValue(context.body(), Account.class);
-            Account loggedIn = accountService.loginAccount(account);
-            if (loggedIn == null)
-            {
-                context.status(401);
-            }
-            else
-            {
-                context.status(200);
-                context.json(loggedIn);
-            }
+            Account account = JsonUtil.ACCOUNT_READER.readValue(context.body());
+            context.future(() -> accountService.loginAccountAsync(account).thenAccept(loggedIn -> {
+                if (loggedIn == null)
+                {
+                    context.status(401);
+                }
+                else
+                {
+                    context.status(200);
+                    context.json(loggedIn);
+                }
+            }));
         }
         catch (JsonProcessingException e)
         {
@@ -104,66 +267,204 @@ public class SocialMediaController
 
     /**
      * Handles adding a new message. Sends client 200 status and JSON of added message if adding succeeds,
-     * otherwise sends 400 status.
+     * otherwise sends 400 status. See rejectedHandler for when 503 status is sent instead.
      * @param context The context for the HTTP request and response
      */
     private void addMessageHandler(Context context)
     {
-        ObjectMapper mapper = new ObjectMapper();
         try
         {
-            Message message = mapper.readValue(context.body(), Message.class);
-            Message added = messageService.addMessage(message);
-            if (added == null)
+            Message message = JsonUtil.MESSAGE_READER.readValue(context.body());
+            context.future(() -> messageService.addMessageAsync(message).thenAccept(added -> {
+                if (added == null)
+                {
+                    context.status(400);
+                }
+                else
+                {
+                    context.status(200);
+                    context.json(added);
+                }
+            }));
+        }
+        catch (JsonProcessingException e)
+        {
+            context.status(400);
+        }
+    }
+
+    /**
+     * Handles bulk import of messages. The body is either a JSON array of messages or newline-delimited JSON with
+     * one message per line, and is read as a stream, so the body itself is never held in memory. Entries are
+     * validated with the same rules as single posts and inserted BULK_CHUNK_SIZE at a time, one transaction per chunk.
+     * Always sends client 200 status and a JSON array with one result per entry, in order, giving either the new
+     * message_id or the reason the entry was rejected. Most HTTP/1.1 clients do not read the response until they have
+     * sent the whole request, so writing results while the body is still arriving could deadlock both sides. Results
+     * are therefore held in a BulkResults, 4 bytes per entry, and only written once the body has been read, and an
+     * import is capped at bulkMaxEntries entries to bound that memory. Larger inputs must be split across requests.
+     * An entry that is valid JSON but not a message is rejected on its own; malformed JSON, or an entry past the cap,
+     * ends the import with a final result for that entry, and entries before it stay imported.
+     * @param context The context for the HTTP request and response
+     * @throws IOException If the request cannot be read or the response cannot be written
+     */
+    private void addMessagesBulkHandler(Context context) throws IOException
+    {
+        BulkResults results = new BulkResults();
+        try (JsonParser parser = JsonUtil.MAPPER.getFactory().createParser(context.bodyInputStream()))
+        {
+            List<Message> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+            int index = 0;
+            try
             {
-                context.status(400);
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array)
+                {
+                    token = parser.nextToken();
+                }
+                while (token != null && !(array && token == JsonToken.END_ARRAY))
+                {
+                    if (index == bulkMaxEntries)
+                    {
+                        importChunk(chunk, index - chunk.size(), results);
+                        results.add(BulkMessageResult.rejected(index, "import is limited to " + bulkMaxEntries + " entries, import stopped"));
+                        break;
+                    }
+                    JsonNode entry = JsonUtil.MAPPER.readTree(parser);
+                    Message message = null;
+                    try
+                    {
+                        message = JsonUtil.MESSAGE_READER.readValue(entry);
+                    }
+                    catch (IOException e)
+                    {
+                        // Valid JSON that is not a message
+                    }
+
+                    if (message == null)
+                    {
+                        importChunk(chunk, index - chunk.size(), results);
+                        results.add(BulkMessageResult.rejected(index, "entry is not a valid message"));
+                    }
+                    else
+                    {
+                        chunk.add(message);
+                        if (chunk.size() == BULK_CHUNK_SIZE)
+                        {
+                            importChunk(chunk, index + 1 - chunk.size(), results);
+                        }
+                    }
+                    index++;
+                    token = parser.nextToken();
+                }
             }
-            else
+            catch (JsonProcessingException e)
             {
-                context.status(200);
-                context.json(added);
+                importChunk(chunk, index - chunk.size(), results);
+                results.add(BulkMessageResult.rejected(index, "malformed JSON, import stopped"));
             }
+
+            importChunk(chunk, index - chunk.size(), results);
         }
-        catch (JsonProcessingException e)
+
+        context.status(200);
+        context.contentType(ContentType.APPLICATION_JSON);
+        try (JsonGenerator generator = JsonUtil.MAPPER.getFactory().createGenerator(context.outputStream()))
         {
-            context.status(400);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            results.write(generator);
+        }
+    }
+
+    /**
+     * Imports a chunk of bulk messages through the MessageService, records their results and empties the chunk.
+     * @param chunk The parsed messages waiting to be imported
+     * @param firstIndex The position of the first message in the import
+     * @param results The results of the import so far
+     */
+    private void importChunk(List<Message> chunk, int firstIndex, BulkResults results)
+    {
+        if (chunk.isEmpty())
+        {
+            return;
+        }
+        for (BulkMessageResult result : messageService.addMessages(chunk, firstIndex))
+        {
+            results.add(result);
         }
+        chunk.clear();
     }
 
     /**
      * Handles retrieval of all messages. Always sends client 200 status and JSON array of messages,
-     * even if no messages exist.
+     * even if no messages exist. Messages are written to the response as they are read from the database,
+     * so memory use does not grow with the number of messages. See MessageArrayStream for how a database failure
+     * is sent.
+     * If the "after" or "limit" query parameters are given, only one page of messages is sent instead.
+     * See sendPage for how the next page is found. Sends 400 status if either parameter is invalid.
      * @param context The context for the HTTP request and response
      */
     private void getAllMessagesHandler(Context context)
     {
-        context.status(200);
-        context.json(messageService.getAllMessages());
+        if (isPaginated(context))
+        {
+            try
+            {
+                int after = afterParam(context);
+                int limit = limitParam(context);
+                context.future(() -> messageService.getMessagesPageAsync(after, limit).thenAccept(page -> sendPage(context, page)));
+            }
+            catch (NumberFormatException e)
+            {
+                // Invalid query parameter
+                context.status(400);
+            }
+            return;
+        }
+
+        MessageArrayStream stream = new MessageArrayStream(context);
+        context.future(() -> messageService.forEachMessageAsync(stream::write)
+                .thenRun(stream::end)
+                .whenComplete((ignored, failure) -> {
+                    if (failure != null)
+                    {
+                        stream.fail(failure);
+                    }
+                }));
     }
 
     /**
      * Handles retrieval of a message based on the message's ID. Always sends client 200 status,
-     * even if no message with the provided ID exists.
+     * even if no message with the provided ID exists, unless the request's If-None-Match names the message's current
+     * ETag, in which case 304 status is sent without reading the message. See notModified. The message is sent from
+     * the MessageService's JSON cache when it holds the current version, without waiting on the DatabaseExecutor.
      * @param context The context for the HTTP request and response
      */
     private void getMessageByIDHandler(Context context)
     {
-        Message message = null;
+        int message_id;
         try
         {
-            int message_id = Integer.parseInt(context.pathParam("message_id"));
-            message = messageService.getMessageByID(message_id);
+            message_id = Integer.parseInt(context.pathParam("message_id"));
         }
         catch (NumberFormatException e)
         {
             // Invalid path parameter
+            context.status(200);
+            return;
         }
-        
-        context.status(200);
-        if (message != null)
+
+        if (notModified(context, messageService.getMessageETag(message_id)))
+        {
+            return;
+        }
+        byte[] cached = messageService.getCachedMessageJson(message_id);
+        if (cached != null)
         {
-            context.json(message);
+            sendJson(context, cached);
+            return;
         }
+        context.future(() -> messageService.getMessageJsonAsync(message_id).thenAccept(json -> sendJson(context, json)));
     }
 
     /**
@@ -173,22 +474,25 @@ public class SocialMediaController
      */
     private void deleteMessageByIDHandler(Context context)
     {
-        Message deleted = null;
+        int message_id;
         try
         {
-            int message_id = Integer.parseInt(context.pathParam("message_id"));
-            deleted = messageService.deleteMessageByID(message_id);
+            message_id = Integer.parseInt(context.pathParam("message_id"));
         }
         catch (NumberFormatException e)
         {
             // Invalid path parameter
+            context.status(200);
+            return;
         }
-        
-        context.status(200);
-        if (deleted != null)
-        {
-            context.json(deleted);
-        }
+
+        context.future(() -> messageService.deleteMessageByIDAsync(message_id).thenAccept(deleted -> {
+            context.status(200);
+            if (deleted != null)
+            {
+                context.json(deleted);
+            }
+        }));
     }
 
     /**
@@ -198,24 +502,23 @@ public class SocialMediaController
      */
     private void updateMessageByIDHandler(Context context)
     {
-        Message updated = null;
         try
         {
             int message_id = Integer.parseInt(context.pathParam("message_id"));
-            ObjectMapper mapper = new ObjectMapper();
             try
             {
-                Message message = mapper.readValue(context.body(), Message.class);
-                updated = messageService.updateMessageByID(message_id, message);
-                if (updated == null)
-                {
-                    context.status(400);
-                }
-                else
-                {
-                    context.status(200);
-                    context.json(updated);
-                }
+                Message message = JsonUtil.MESSAGE_READER.readValue(context.body());
+                context.future(() -> messageService.updateMessageByIDAsync(message_id, message).thenAccept(updated -> {
+                    if (updated == null)
+                    {
+                        context.status(400);
+                    }
+                    else
+                    {
+                        context.status(200);
+                        context.json(updated);
+                    }
+                }));
             }
             catch (JsonProcessingException e)
             {
@@ -231,26 +534,293 @@ public class SocialMediaController
 
     /**
      * Handles retrieval of all messages sent by a single account based on the account's ID.
-     * Always sends client 200 status, even if no messages sent by the account exist.
+     * Always sends client 200 status, even if no messages sent by the account exist, unless the request's
+     * If-None-Match names the current ETag of the account's messages, in which case 304 status is sent without
+     * reading them. One tag covers the full list and every page of it. See notModified. The full list is sent from
+     * the MessageService's JSON cache when it holds the current version, without waiting on the DatabaseExecutor.
      * @param context The context for the HTTP request and response
      */
     private void getMessagesByAccountIDHandler(Context context)
     {
-        context.status(200);
-        List<Message> messages = null;
+        int account_id;
         try
         {
-            int account_id = Integer.parseInt(context.pathParam("account_id"));
-            messages = messageService.getMessagesByAccountID(account_id);
+            account_id = Integer.parseInt(context.pathParam("account_id"));
         }
         catch (NumberFormatException e)
         {
             // Invalid path parameter
-            messages = new ArrayList<>();
+            context.status(200);
+            context.json(new ArrayList<Message>(), JsonUtil.MESSAGE_LIST_TYPE);
+            return;
+        }
+
+        if (notModified(context, messageService.getAccountMessagesETag(account_id)))
+        {
+            return;
+        }
+        if (isPaginated(context))
+        {
+            try
+            {
+                int after = afterParam(context);
+                int limit = limitParam(context);
+                context.future(() -> messageService.getMessagesPageByAccountIDAsync(account_id, after, limit)
+                        .thenAccept(page -> sendPage(context, page)));
+            }
+            catch (NumberFormatException e)
+            {
+                // Invalid query parameter
+                context.status(400);
+            }
+            return;
+        }
+
+        byte[] cached = messageService.getCachedAccountMessagesJson(account_id);
+        if (cached != null)
+        {
+            sendJson(context, cached);
+            return;
+        }
+        context.future(() -> messageService.getAccountMessagesJsonAsync(account_id).thenAccept(json -> sendJson(context, json)));
+    }
+
+    /**
+     * Sends client 200 status and JSON that the MessageService has already serialized, or no body if it is empty.
+     * On a JSON cache hit this runs on the request thread with no executor hop and no serialization.
+     * @param context The context for the HTTP request and response
+     * @param json The UTF-8 JSON to send
+     */
+    private void sendJson(Context context, byte[] json)
+    {
+        context.status(200);
+        if (json.length > 0)
+        {
+            context.contentType(ContentType.APPLICATION_JSON);
+            context.result(json);
+        }
+    }
+
+    /**
+     * Sets the ETag header and answers a conditional GET from it. The tag is read before the handler reads any data,
+     * so if a write lands in between, the client gets the new data under the old tag and simply fetches it again
+     * next time, and never keeps old data under a new tag. If-None-Match is compared weakly, as RFC 9110 requires.
+     * @param context The context for the HTTP request and response
+     * @param etag The current tag of the requested resource
+     * @return True if the client's copy is current and 304 status was sent, so the handler must not send a body
+     */
+    private boolean notModified(Context context, String etag)
+    {
+        context.header(Header.ETAG, etag);
+        String ifNoneMatch = context.header(Header.IF_NONE_MATCH);
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(","))
+        {
+            tag = tag.trim();
+            if ((tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag))
+            {
+                context.status(304);
+                return true;
+            }
         }
-        finally
+        return false;
+    }
+
+    /**
+     * @param context The context for the HTTP request
+     * @return True if the request asks for a single page through the "after" or "limit" query parameters
+     */
+    private boolean isPaginated(Context context)
+    {
+        return context.queryParam("after") != null || context.queryParam("limit") != null;
+    }
+
+    /**
+     * Reads the "after" query parameter, the message_id that the requested page starts after.
+     * @param context The context for the HTTP request
+     * @return The cursor, or 0 to start from the first message if the parameter is absent
+     * @throws NumberFormatException If the parameter is not a non-negative integer
+     */
+    private int afterParam(Context context)
+    {
+        String after = context.queryParam("after");
+        if (after == null)
+        {
+            return 0;
+        }
+
+        int cursor = Integer.parseInt(after);
+        if (cursor < 0)
         {
-            context.json(messages);
+            throw new NumberFormatException("after must not be negative");
+        }
+        return cursor;
+    }
+
+    /**
+     * Reads the "limit" query parameter, the maximum number of messages on the requested page. Limits above the
+     * configured maximum page size are lowered to it.
+     * @param context The context for the HTTP request
+     * @return The page size, or the default page size if the parameter is absent
+     * @throws NumberFormatException If the parameter is not a positive integer
+     */
+    private int limitParam(Context context)
+    {
+        String limit = context.queryParam("limit");
+        if (limit == null)
+        {
+            return DEFAULT_PAGE_SIZE;
+        }
+
+        int size = Integer.parseInt(limit);
+        if (size < 1)
+        {
+            throw new NumberFormatException("limit must be positive");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Sends client 200 status and the JSON array of messages on a page. If there is another page, its cursor is
+     * sent in the X-Next-Cursor header to be passed back as the "after" query parameter.
+     * @param context The context for the HTTP request and response
+     * @param page The page to send
+     */
+    private void sendPage(Context context, MessagePage page)
+    {
+        context.status(200);
+        if (page.getNext_cursor() != null)
+        {
+            context.header(NEXT_CURSOR_HEADER, page.getNext_cursor().toString());
+        }
+        context.json(page.getMessages(), JsonUtil.MESSAGE_LIST_TYPE);
+    }
+
+    /**
+     * A JSON array of messages streamed to the response as they are read. Nothing is sent until the first message is
+     * written or the array is ended, so a query that fails before its first row is answered by the exception handlers
+     * with 503 or 500 status like any other request. Once the array has started, 200 status and some messages may
+     * already have reached the client, so a failure aborts the connection instead of completing the response, and
+     * the client sees a failed response rather than a shorter array that looks complete.
+     */
+    private static class MessageArrayStream
+    {
+        private final Context context;
+        private JsonGenerator generator;
+
+        private MessageArrayStream(Context context)
+        {
+            this.context = context;
+        }
+
+        /**
+         * @param message The next message in the array
+         * @throws IOException If the response cannot be written
+         */
+        private void write(Message message) throws IOException
+        {
+            start();
+            JsonUtil.MESSAGE_STREAM_WRITER.writeValue(generator, message);
+        }
+
+        /**
+         * Ends the array and flushes it to the response.
+         * @throws UncheckedIOException If the response cannot be written
+         */
+        private void end()
+        {
+            try
+            {
+                start();
+                generator.writeEndArray();
+                generator.close();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Aborts the connection if the array has started. Otherwise nothing has been sent and the exception handlers
+         * answer the failure.
+         * @param failure Why the messages could not be sent
+         */
+        private void fail(Throwable failure)
+        {
+            if (generator != null)
+            {
+                Request.getBaseRequest(context.req()).getHttpChannel().abort(failure);
+            }
+        }
+
+        private void start() throws IOException
+        {
+            if (generator == null)
+            {
+                context.status(200);
+                context.contentType(ContentType.APPLICATION_JSON);
+                generator = JsonUtil.MAPPER.getFactory().createGenerator(context.outputStream());
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+            }
+        }
+    }
+
+    /**
+     * The results of one bulk import, in entry order, in one int per entry: the message_id of an imported entry, or
+     * for a rejected entry the negated position plus one of its reason in a list of the distinct reasons seen. There
+     * are only a handful of reasons, so a million entries take about 4 MB however many are rejected.
+     */
+    private static class BulkResults
+    {
+        private int[] results = new int[1024];
+        private int size;
+        private final List<String> reasons = new ArrayList<>();
+
+        /**
+         * @param result The result for the next entry
+         */
+        private void add(BulkMessageResult result)
+        {
+            if (size == results.length)
+            {
+                results = Arrays.copyOf(results, size * 2);
+            }
+            if (result.getError() == null)
+            {
+                results[size] = result.getMessage_id();
+            }
+            else
+            {
+                int reason = reasons.indexOf(result.getError());
+                if (reason < 0)
+                {
+                    reason = reasons.size();
+                    reasons.add(result.getError());
+                }
+                results[size] = -(reason + 1);
+            }
+            size++;
+        }
+
+        /**
+         * Writes every result as one JSON array.
+         */
+        private void write(JsonGenerator generator) throws IOException
+        {
+            generator.writeStartArray();
+            for (int i = 0; i < size; i++)
+            {
+                BulkMessageResult result = results[i] > 0 ? BulkMessageResult.imported(i, results[i])
+                        : BulkMessageResult.rejected(i, reasons.get(-results[i] - 1));
+                JsonUtil.BULK_RESULT_STREAM_WRITER.writeValue(generator, result);
+            }
+            generator.writeEndArray();
         }
     }
-}
\ No newline at end of file
+}
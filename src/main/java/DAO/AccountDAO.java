@@ -1,42 +1,63 @@
 package DAO;
 
-import Util.ConnectionUtil;
+import java.util.List;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
+import Util.AtomicBitSet;
 
 import Model.Account;
 
-public class AccountDAO
+public class AccountDAO implements AccountRepository
 {
     /**
-     * Queries the database for an account based on username.
-     * @param username The username of the account to get
-     * @return The Account with the given username or null if none exists
+     * Maps a row selecting account_id, username and password to an Account.
      */
-    public Account getAccountByUsername(String username)
+    public static final RowMapper<Account> ACCOUNT_MAPPER = row -> new Account(row.getInt("account_id"),
+            row.getString("username"), row.getString("password"));
+
+    private final JdbcTemplate jdbc = new JdbcTemplate();
+
+    /**
+     * The IDs of accounts known to exist. Accounts are never deleted, so once an ID is in the set it stays valid.
+     * The set is filled from the Account table when the DAO is created and by every account this DAO adds.
+     */
+    private final AtomicBitSet knownAccountIDs = new AtomicBitSet(1024);
+
+    public AccountDAO()
+    {
+        loadKnownAccountIDs();
+    }
+
+    /**
+     * Checks whether an account exists. Known account IDs are answered from memory; any other ID is checked
+     * against the database and remembered if the account is found.
+     * @param id The ID of the account to check
+     * @return True if an account with the given ID exists
+     */
+    @Override
+    public boolean accountExists(int id)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        Account account = null;
-        try
+        if (knownAccountIDs.get(id))
         {
-            PreparedStatement ps = connection.prepareStatement("select account_id, username, password from Account where username = ?");
-            ps.setString(1, username);
-            ResultSet result = ps.executeQuery();
-            if (result.next())
-            {
-                account = new Account(result.getInt("account_id"), result.getString("username"), result.getString("password"));
-            }
+            return true;
         }
-        catch (SQLException e)
+
+        boolean exists = jdbc.queryOne("select 1 from Account where account_id = ?", row -> Boolean.TRUE, id) != null;
+        if (exists)
         {
-            System.out.println(e.getMessage());
+            knownAccountIDs.set(id);
         }
+        return exists;
+    }
 
-        return account;
+    /**
+     * Queries the database for an account based on username.
+     * @param username The username of the account to get
+     * @return The Account with the given username or null if none exists
+     */
+    @Override
+    public Account getAccountByUsername(String username)
+    {
+        return jdbc.queryOne("select account_id, username, password from Account where username = ?", ACCOUNT_MAPPER, username);
     }
 
     /**
@@ -44,26 +65,20 @@ public class AccountDAO
      * @param id The ID of the account to get
      * @return The Account with the given ID or null if none exists
      */
+    @Override
     public Account getAccountByID(int id)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        Account account = null;
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("select account_id, username, password from Account where account_id = ?");
-            ps.setInt(1, id);
-            ResultSet result = ps.executeQuery();
-            if (result.next())
-            {
-                account = new Account(result.getInt("account_id"), result.getString("username"), result.getString("password"));
-            }
-        }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
+        return jdbc.queryOne("select account_id, username, password from Account where account_id = ?", ACCOUNT_MAPPER, id);
+    }
 
-        return account;
+    /**
+     * Retrieves all accounts in the database.
+     * @return A list of all accounts that currently exist in the database
+     */
+    @Override
+    public List<Account> getAllAccounts()
+    {
+        return jdbc.query("select account_id, username, password from Account", ACCOUNT_MAPPER);
     }
 
     /**
@@ -71,29 +86,28 @@ public class AccountDAO
      * @param account The account to add
      * @return The added account or null if insertion failed
      */
+    @Override
     public Account addAccount(Account account)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        Account addedAccount = null;
-        try
+        Integer generatedAccountID = jdbc.insertReturningKey("insert into Account(username, password) values (?, ?)",
+                account.getUsername(), account.getPassword());
+        if (generatedAccountID == null)
         {
-            PreparedStatement ps = connection.prepareStatement("insert into Account(username, password) values (?, ?)", Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, account.getUsername());
-            ps.setString(2, account.getPassword());
-            ps.executeUpdate();
-
-            ResultSet generatedAccountIDSet = ps.getGeneratedKeys();
-            if (generatedAccountIDSet.next())
-            {
-                int generatedAccountID = (int) generatedAccountIDSet.getLong(1);
-                addedAccount = new Account(generatedAccountID, account.getUsername(), account.getPassword());
-            }
+            return null;
         }
-        catch (SQLException e)
+
+        knownAccountIDs.set(generatedAccountID);
+        return new Account(generatedAccountID, account.getUsername(), account.getPassword());
+    }
+
+    /**
+     * Warms the set of known account IDs with every account currently in the database.
+     */
+    private void loadKnownAccountIDs()
+    {
+        for (int id : jdbc.query("select account_id from Account", row -> row.getInt("account_id")))
         {
-            System.out.println(e.getMessage());
+            knownAccountIDs.set(id);
         }
-
-        return addedAccount;
     }
 }
@@ -0,0 +1,48 @@
+package DAO;
+
+import java.util.List;
+
+import Model.Account;
+
+/**
+ * Stores accounts. AccountDAO keeps them in H2 and InMemoryAccountRepository keeps them in concurrent maps; which
+ * one the application uses is chosen by StorageEngine at startup.
+ */
+public interface AccountRepository
+{
+    /**
+     * Checks whether an account exists.
+     * @param id The ID of the account to check
+     * @return True if an account with the given ID exists
+     */
+    boolean accountExists(int id);
+
+    /**
+     * Gets an account based on username.
+     * @param username The username of the account to get
+     * @return The Account with the given username or null if none exists
+     * @throws DataAccessException If the account could not be read. Callers cache null as an unknown username, so a
+     *  failure must never be returned as null.
+     */
+    Account getAccountByUsername(String username);
+
+    /**
+     * Gets an account based on ID.
+     * @param id The ID of the account to get
+     * @return The Account with the given ID or null if none exists
+     */
+    Account getAccountByID(int id);
+
+    /**
+     * Gets every account.
+     * @return A list of all accounts that currently exist
+     */
+    List<Account> getAllAccounts();
+
+    /**
+     * Adds an account with a newly generated ID. Usernames are unique, so adding a username that already exists fails.
+     * @param account The account to add
+     * @return The added account or null if insertion failed
+     */
+    Account addAccount(Account account);
+}
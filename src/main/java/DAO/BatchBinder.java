@@ -0,0 +1,19 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a batched statement for one item of the batch.
+ * @param <T> The type of the items being written
+ */
+@FunctionalInterface
+public interface BatchBinder<T>
+{
+    /**
+     * @param ps The statement to set the parameters of
+     * @param item The item to write
+     * @throws SQLException If a parameter cannot be set
+     */
+    void bind(PreparedStatement ps, T item) throws SQLException;
+}
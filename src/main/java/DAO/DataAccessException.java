@@ -0,0 +1,18 @@
+package DAO;
+
+/**
+ * Thrown by the repositories when the store fails to run a statement, as opposed to answering it with no rows. The
+ * cause is the underlying SQLException or IOException. Callers must not treat it as a missing or rejected record,
+ * and the controller answers it with 500 status.
+ */
+public class DataAccessException extends RuntimeException
+{
+    /**
+     * @param message What was being done when the store failed
+     * @param cause The failure
+     */
+    public DataAccessException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
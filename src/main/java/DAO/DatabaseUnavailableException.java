@@ -0,0 +1,17 @@
+package DAO;
+
+/**
+ * A DataAccessException for failures that may succeed if retried, such as timing out waiting for a pooled connection
+ * or for a lock. The controller answers it with 503 status rather than 500.
+ */
+public class DatabaseUnavailableException extends DataAccessException
+{
+    /**
+     * @param message What was being done when the store failed
+     * @param cause The failure
+     */
+    public DatabaseUnavailableException(String message, Throwable cause)
+    {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,133 @@
+package DAO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Model.Account;
+import Util.ConcurrentIntArrayMap;
+
+/**
+ * Keeps accounts in a ConcurrentIntArrayMap indexed by account_id, which boxes nothing for the account existence
+ * check every new message makes, and in a concurrent map by username, with IDs handed out by an atomic counter.
+ * Nothing is written to H2, so accounts added here are lost when the application stops.
+ */
+public class InMemoryAccountRepository implements AccountRepository
+{
+    private final ConcurrentIntArrayMap<Account> accountsByID = new ConcurrentIntArrayMap<>();
+    private final ConcurrentHashMap<String, Account> accountsByUsername = new ConcurrentHashMap<>();
+    private final AtomicInteger lastAccountID = new AtomicInteger();
+    /**
+     * The repository still to be copied on first use, or null once it has been copied or if there is none.
+     */
+    private volatile AccountRepository source;
+
+    /**
+     * Creates an empty repository.
+     */
+    public InMemoryAccountRepository()
+    {
+    }
+
+    /**
+     * Creates a repository that copies every account in another repository on first use, keeping their IDs. New
+     * accounts are numbered after the highest copied ID.
+     * @param source The repository to copy, usually the AccountDAO
+     */
+    public InMemoryAccountRepository(AccountRepository source)
+    {
+        this.source = source;
+    }
+
+    @Override
+    public boolean accountExists(int id)
+    {
+        load();
+        return accountsByID.get(id) != null;
+    }
+
+    @Override
+    public Account getAccountByUsername(String username)
+    {
+        load();
+        return accountsByUsername.get(username);
+    }
+
+    @Override
+    public Account getAccountByID(int id)
+    {
+        load();
+        return accountsByID.get(id);
+    }
+
+    @Override
+    public List<Account> getAllAccounts()
+    {
+        load();
+        List<Account> accounts = new ArrayList<>();
+        int highest = accountsByID.getHighestKey();
+        for (int account_id = 0; account_id <= highest; account_id++)
+        {
+            Account account = accountsByID.get(account_id);
+            if (account != null)
+            {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Adds an account. The username is claimed first, so of two registrations racing for one username exactly one
+     * succeeds. The loser's ID is skipped, as an H2 identity value would be.
+     * @param account The account to add
+     * @return The added account or null if the username is taken
+     */
+    @Override
+    public Account addAccount(Account account)
+    {
+        load();
+        Account added = new Account(lastAccountID.incrementAndGet(), account.getUsername(), account.getPassword());
+        if (accountsByUsername.putIfAbsent(added.getUsername(), added) != null)
+        {
+            return null;
+        }
+
+        accountsByID.put(added.getAccount_id(), added);
+        return added;
+    }
+
+    /**
+     * Copies the source repository if that has not happened yet. Callers racing the copy wait for it to finish.
+     */
+    private void load()
+    {
+        if (source == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (source != null)
+            {
+                for (Account account : source.getAllAccounts())
+                {
+                    put(account);
+                }
+                source = null;
+            }
+        }
+    }
+
+    /**
+     * Stores an account with its existing ID and moves the ID counter past it.
+     */
+    private void put(Account account)
+    {
+        accountsByUsername.put(account.getUsername(), account);
+        accountsByID.put(account.getAccount_id(), account);
+        lastAccountID.accumulateAndGet(account.getAccount_id(), Math::max);
+    }
+}
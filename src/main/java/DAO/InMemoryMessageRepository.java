@@ -0,0 +1,273 @@
+package DAO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import Model.Message;
+import Util.ConcurrentIntArrayMap;
+import Util.SortedIntMultimap;
+
+/**
+ * Keeps messages in a ConcurrentIntArrayMap indexed by message_id, with a SortedIntMultimap from posted_by to message
+ * IDs and IDs handed out by an atomic counter. Nothing is written to H2, so messages added here are lost when the
+ * application stops.
+ *
+ * Neither structure boxes its keys, so a message costs one array slot and one int in its account's array on top of
+ * the Message itself. Message IDs come from the counter and are dense, so paging and full scans walk the array in
+ * message_id order without sorting, as they do H2's primary key index, skipping the slots of deleted messages.
+ * Reads see every write that completed before they started; a scan running alongside writes may or may not see them.
+ */
+public class InMemoryMessageRepository implements MessageRepository
+{
+    private final ConcurrentIntArrayMap<Message> messages = new ConcurrentIntArrayMap<>();
+    private final SortedIntMultimap messageIDsByAccount = new SortedIntMultimap();
+    private final AtomicInteger lastMessageID = new AtomicInteger();
+    /**
+     * The repository still to be copied on first use, or null once it has been copied or if there is none.
+     */
+    private volatile MessageRepository source;
+
+    /**
+     * Creates an empty repository.
+     */
+    public InMemoryMessageRepository()
+    {
+    }
+
+    /**
+     * Creates a repository that copies every message in another repository on first use, keeping their IDs. New
+     * messages are numbered after the highest copied ID.
+     * @param source The repository to copy, usually the MessageDAO
+     */
+    public InMemoryMessageRepository(MessageRepository source)
+    {
+        this.source = source;
+    }
+
+    @Override
+    public Message addMessage(Message message)
+    {
+        load();
+        Message added = new Message(lastMessageID.incrementAndGet(), message.getPosted_by(), message.getMessage_text(),
+                message.getTime_posted_epoch());
+        put(added);
+        return added;
+    }
+
+    @Override
+    public int[] reserveMessageIDs(int count)
+    {
+        load();
+        int first = lastMessageID.getAndAdd(count) + 1;
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            ids[i] = first + i;
+        }
+        return ids;
+    }
+
+    /**
+     * Adds messages with reserved IDs. If any ID is already taken, the messages added so far are removed again and
+     * nothing is added.
+     * @param messages The messages to add, each with its reserved message_id
+     * @return True if every message was added
+     */
+    @Override
+    public boolean addMessages(List<Message> messages)
+    {
+        load();
+        for (int i = 0; i < messages.size(); i++)
+        {
+            Message message = messages.get(i);
+            if (this.messages.putIfAbsent(message.getMessage_id(), message) != null)
+            {
+                for (int j = 0; j < i; j++)
+                {
+                    this.messages.remove(messages.get(j).getMessage_id());
+                }
+                return false;
+            }
+        }
+
+        for (Message message : messages)
+        {
+            index(message);
+        }
+        return true;
+    }
+
+    @Override
+    public List<Message> getAllMessages()
+    {
+        load();
+        return getMessagesAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void forEachMessage(MessageHandler handler) throws IOException
+    {
+        load();
+        int highest = messages.getHighestKey();
+        for (int message_id = 1; message_id <= highest; message_id++)
+        {
+            Message message = messages.get(message_id);
+            if (message != null)
+            {
+                handler.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int after, int limit)
+    {
+        load();
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        int highest = messages.getHighestKey();
+        for (int message_id = Math.max(after, 0) + 1; message_id <= highest && page.size() < limit; message_id++)
+        {
+            Message message = messages.get(message_id);
+            if (message != null)
+            {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Message getMessageByID(int message_id)
+    {
+        load();
+        return messages.get(message_id);
+    }
+
+    @Override
+    public List<Message> getMessagesByIDs(int[] message_ids)
+    {
+        load();
+        List<Message> found = new ArrayList<>(message_ids.length);
+        for (int message_id : message_ids)
+        {
+            Message message = messages.get(message_id);
+            if (message != null)
+            {
+                found.add(message);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Message deleteMessageByID(int message_id)
+    {
+        load();
+        Message deleted = messages.remove(message_id);
+        if (deleted != null)
+        {
+            messageIDsByAccount.remove(deleted.getPosted_by(), message_id);
+        }
+        return deleted;
+    }
+
+    @Override
+    public Message updateMessageByID(int message_id, String message_text)
+    {
+        load();
+        return messages.computeIfPresent(message_id, message -> new Message(message_id, message.getPosted_by(),
+                message_text, message.getTime_posted_epoch()));
+    }
+
+    @Override
+    public boolean indexesMessagesByAccount()
+    {
+        return true;
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountID(int account_id)
+    {
+        load();
+        return getMessagesByAccountIDAfter(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the account's IDs from the index after the cursor and looks up their messages. An ID whose message was
+     * deleted between the index read and the lookup is skipped, and more IDs are read to fill the page.
+     */
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after, int limit)
+    {
+        load();
+        List<Message> page = new ArrayList<>();
+        int cursor = after;
+        while (page.size() < limit)
+        {
+            int wanted = limit - page.size();
+            int[] ids = messageIDsByAccount.getAfter(account_id, cursor, wanted);
+            for (int message_id : ids)
+            {
+                Message message = messages.get(message_id);
+                if (message != null)
+                {
+                    page.add(message);
+                }
+            }
+            if (ids.length < wanted)
+            {
+                break;
+            }
+            cursor = ids[ids.length - 1];
+        }
+        return page;
+    }
+
+    /**
+     * Copies the source repository if that has not happened yet. Callers racing the copy wait for it to finish.
+     */
+    private void load()
+    {
+        if (source == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (source != null)
+            {
+                try
+                {
+                    source.forEachMessage(message -> {
+                        put(message);
+                        lastMessageID.accumulateAndGet(message.getMessage_id(), Math::max);
+                    });
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+                source = null;
+            }
+        }
+    }
+
+    /**
+     * Stores a message and indexes it under its account. The message is stored before it is indexed, so an account
+     * lookup never finds an ID without its message.
+     */
+    private void put(Message message)
+    {
+        messages.put(message.getMessage_id(), message);
+        index(message);
+    }
+
+    private void index(Message message)
+    {
+        messageIDsByAccount.add(message.getPosted_by(), message.getMessage_id());
+    }
+}
@@ -0,0 +1,396 @@
+package DAO;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Util.ConnectionUtil;
+
+/**
+ * Runs SQL against a connection borrowed from ConnectionUtil and releases the connection, statement and result set
+ * before returning, whether the statement succeeds or fails. DAOs describe a query as SQL, parameters and a RowMapper
+ * and never handle JDBC resources themselves.
+ *
+ * Parameters are bound in order with setObject. A statement the database rejects for breaking a constraint, such as
+ * a duplicate username, is logged at debug and the method returns its documented failure value, so callers see null,
+ * -1 or false for an invalid write the same way the DAOs always have. Any other failure, including timing out
+ * waiting for a pooled connection, is thrown as a DataAccessException, so callers never mistake a database that is
+ * down for a record that does not exist. Failures that may succeed if retried, such as timeouts, are thrown as its
+ * subclass DatabaseUnavailableException.
+ *
+ * Every statement is timed by a QueryTrace, which records it in Metrics under the DAO method that ran it and logs it
+ * if it is sampled or slow. The method is found by walking the stack the first time each SQL string is seen and
+ * remembered after that, so a statement shared by two DAO methods is counted under whichever ran it first.
+ */
+public class JdbcTemplate
+{
+    private static final Logger logger = LoggerFactory.getLogger(JdbcTemplate.class);
+
+    /**
+     * The most distinct SQL strings whose DAO method is remembered. Statements beyond it are still recorded, but walk
+     * the stack every time.
+     */
+    private static final int MAX_OPERATIONS = 1000;
+
+    private static final Map<String, String> operations = new ConcurrentHashMap<>();
+    private static final StackWalker stackWalker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    /**
+     * Runs a query and maps every row.
+     * @param sql The query
+     * @param mapper Maps each row
+     * @param params The query parameters, in order
+     * @return The mapped rows
+     * @throws DataAccessException If the query failed
+     */
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params)
+    {
+        return query(sql, params, mapper, ps -> bind(ps, params));
+    }
+
+    /**
+     * Runs a query whose parameters are set by the binder and maps every row. Sampled or slow statements run this
+     * way are logged without their parameters.
+     * @param sql The query
+     * @param mapper Maps each row
+     * @param binder Sets the query parameters
+     * @return The mapped rows
+     * @throws DataAccessException If the query failed
+     */
+    public <T> List<T> query(String sql, RowMapper<T> mapper, StatementBinder binder)
+    {
+        return query(sql, null, mapper, binder);
+    }
+
+    private <T> List<T> query(String sql, Object[] params, RowMapper<T> mapper, StatementBinder binder)
+    {
+        List<T> rows = new ArrayList<>();
+        QueryTrace trace = new QueryTrace(sql, params);
+        try (Connection connection = acquire(trace);
+             PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            binder.bind(ps);
+            try (ResultSet results = ps.executeQuery())
+            {
+                trace.executed();
+                RowMapper<T> rowMapper = mapper.prepare(results);
+                while (results.next())
+                {
+                    rows.add(rowMapper.mapRow(results));
+                }
+            }
+            trace.rows(rows.size());
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+
+        return rows;
+    }
+
+    /**
+     * Runs a query and maps its first row. Also used for H2 data change delta tables, such as
+     * "select ... from final table (update ...)", which change rows and return them in one statement.
+     * @param sql The query
+     * @param mapper Maps the first row
+     * @param params The query parameters, in order
+     * @return The mapped first row, or null if there were no rows or the statement broke a constraint
+     * @throws DataAccessException If the query failed
+     */
+    public <T> T queryOne(String sql, RowMapper<T> mapper, Object... params)
+    {
+        T row = null;
+        QueryTrace trace = new QueryTrace(sql, params);
+        try (Connection connection = acquire(trace);
+             PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            bind(ps, params);
+            try (ResultSet results = ps.executeQuery())
+            {
+                trace.executed();
+                if (results.next())
+                {
+                    row = mapper.prepare(results).mapRow(results);
+                    trace.rows(1);
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+
+        return row;
+    }
+
+    /**
+     * Runs a query with H2's lazy query execution and hands each mapped row to the handler as it is read, so the
+     * result never has to fit in memory. Lazy execution is turned off again before the connection goes back to the
+     * pool.
+     * @param sql The query
+     * @param fetchSize The number of rows to fetch per round trip
+     * @param mapper Maps each row
+     * @param handler Called once for each row
+     * @param params The query parameters, in order
+     * @throws IOException If the handler fails
+     * @throws DataAccessException If the query failed
+     */
+    public <T> void queryEach(String sql, int fetchSize, RowMapper<T> mapper, RowHandler<? super T> handler, Object... params) throws IOException
+    {
+        QueryTrace trace = new QueryTrace(sql, params);
+        try (Connection connection = acquire(trace))
+        {
+            setLazyQueryExecution(connection, true);
+            try (PreparedStatement ps = connection.prepareStatement(sql))
+            {
+                bind(ps, params);
+                ps.setFetchSize(fetchSize);
+                try (ResultSet results = ps.executeQuery())
+                {
+                    trace.executed();
+                    RowMapper<T> rowMapper = mapper.prepare(results);
+                    long count = 0;
+                    while (results.next())
+                    {
+                        handler.accept(rowMapper.mapRow(results));
+                        count++;
+                    }
+                    trace.rows(count);
+                }
+            }
+            finally
+            {
+                setLazyQueryExecution(connection, false);
+            }
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+    }
+
+    /**
+     * Runs an insert, update or delete.
+     * @param sql The statement
+     * @param params The statement parameters, in order
+     * @return The number of rows changed, or -1 if the statement broke a constraint
+     * @throws DataAccessException If the statement failed
+     */
+    public int update(String sql, Object... params)
+    {
+        int updated = -1;
+        QueryTrace trace = new QueryTrace(sql, params);
+        try (Connection connection = acquire(trace);
+             PreparedStatement ps = connection.prepareStatement(sql))
+        {
+            bind(ps, params);
+            updated = ps.executeUpdate();
+            trace.executed();
+            trace.rows(updated);
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+
+        return updated;
+    }
+
+    /**
+     * Runs an insert and reads back the key the database generated for the new row.
+     * @param sql The insert
+     * @param params The insert parameters, in order
+     * @return The generated key, or null if the insert broke a constraint
+     * @throws DataAccessException If the insert failed
+     */
+    public Integer insertReturningKey(String sql, Object... params)
+    {
+        Integer key = null;
+        QueryTrace trace = new QueryTrace(sql, params);
+        try (Connection connection = acquire(trace);
+             PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS))
+        {
+            bind(ps, params);
+            trace.rows(ps.executeUpdate());
+            trace.executed();
+            try (ResultSet generatedKeys = ps.getGeneratedKeys())
+            {
+                if (generatedKeys.next())
+                {
+                    key = (int) generatedKeys.getLong(1);
+                }
+            }
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+
+        return key;
+    }
+
+    /**
+     * Runs one statement for every item as a single JDBC batch in a single transaction, so either every item is
+     * written or none are.
+     * @param sql The statement
+     * @param items The items to write
+     * @param binder Sets the statement parameters for one item
+     * @return True if the whole batch was committed, false if it broke a constraint and was rolled back
+     * @throws DataAccessException If the batch failed for any other reason
+     */
+    public <T> boolean batchUpdate(String sql, List<T> items, BatchBinder<? super T> binder)
+    {
+        boolean committed = false;
+        QueryTrace trace = new QueryTrace(sql, null);
+        try (Connection connection = acquire(trace))
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql))
+            {
+                for (T item : items)
+                {
+                    binder.bind(ps, item);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                connection.commit();
+                trace.executed();
+                trace.rows(items.size());
+                committed = true;
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e)
+        {
+            trace.failed();
+            throwUnlessRejected(e, sql);
+        }
+        finally
+        {
+            trace.finish(operationFor(sql));
+        }
+
+        return committed;
+    }
+
+    /**
+     * Handles a failed statement as described above: returns if the database rejected it for breaking a constraint,
+     * so the caller returns its failure value, and otherwise throws.
+     * @param e The failure
+     * @param sql The statement that failed
+     * @throws DatabaseUnavailableException If the failure is transient, such as a connection or lock timeout
+     * @throws DataAccessException For any other failure
+     */
+    private static void throwUnlessRejected(SQLException e, String sql)
+    {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException())
+        {
+            // SQLSTATE class 23 is integrity constraint violation
+            if (cause.getSQLState() != null && cause.getSQLState().startsWith("23"))
+            {
+                logger.debug("Statement rejected: {}", cause.getMessage());
+                return;
+            }
+        }
+        if (e instanceof SQLTransientException)
+        {
+            throw new DatabaseUnavailableException("Database unavailable running: " + sql, e);
+        }
+        throw new DataAccessException("Failed to run: " + sql, e);
+    }
+
+    /**
+     * Borrows a connection from the pool, ending the trace's acquire phase.
+     */
+    private Connection acquire(QueryTrace trace) throws SQLException
+    {
+        Connection connection = ConnectionUtil.getConnection();
+        trace.acquired();
+        return connection;
+    }
+
+    /**
+     * @return The class and method name, such as MessageDAO.getMessageByID, of the nearest caller outside this class
+     */
+    private static String operationFor(String sql)
+    {
+        String operation = operations.get(sql);
+        if (operation == null)
+        {
+            operation = stackWalker.walk(frames -> frames
+                    .filter(frame -> frame.getDeclaringClass() != JdbcTemplate.class)
+                    .findFirst()
+                    .map(frame -> frame.getDeclaringClass().getSimpleName() + "." + frame.getMethodName())
+                    .orElse("unknown"));
+            if (operations.size() < MAX_OPERATIONS)
+            {
+                operations.putIfAbsent(sql, operation);
+            }
+        }
+        return operation;
+    }
+
+    private void bind(PreparedStatement ps, Object[] params) throws SQLException
+    {
+        for (int i = 0; i < params.length; i++)
+        {
+            ps.setObject(i + 1, params[i]);
+        }
+    }
+
+    /**
+     * Turns H2's lazy query execution on or off for the session behind a pooled connection.
+     */
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement(lazy ? "set lazy_query_execution true" : "set lazy_query_execution false"))
+        {
+            ps.execute();
+        }
+    }
+}
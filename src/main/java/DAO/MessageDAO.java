@@ -1,149 +1,224 @@
 package DAO;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import Model.Message;
-import Util.ConnectionUtil;
+import Util.Config;
 
-public class MessageDAO
+public class MessageDAO implements MessageRepository
 {
+    /**
+     * Number of rows fetched per round trip when streaming messages.
+     */
+    private static final int FETCH_SIZE = Config.getInt("messages.fetchSize", 100);
+
+    private static final String COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    /**
+     * Maps a row selecting COLUMNS to a Message. Column indexes are resolved once per ResultSet, so reading a row
+     * costs four indexed reads rather than four case-insensitive column name lookups.
+     */
+    public static final RowMapper<Message> MESSAGE_MAPPER = new RowMapper<>()
+    {
+        @Override
+        public Message mapRow(ResultSet row) throws SQLException
+        {
+            return prepare(row).mapRow(row);
+        }
+
+        @Override
+        public RowMapper<Message> prepare(ResultSet results) throws SQLException
+        {
+            int messageID = results.findColumn("message_id");
+            int postedBy = results.findColumn("posted_by");
+            int messageText = results.findColumn("message_text");
+            int timePostedEpoch = results.findColumn("time_posted_epoch");
+            return row -> new Message(row.getInt(messageID), row.getInt(postedBy), row.getString(messageText),
+                    row.getLong(timePostedEpoch));
+        }
+    };
+
+    /**
+     * The numbers of IDs getMessagesByIDs binds per statement, smallest first, and the statement for each.
+     */
+    private static final int[] ID_LIST_SIZES = {8, 64, 512};
+    private static final String[] BY_IDS_SQL = new String[ID_LIST_SIZES.length];
+
+    static
+    {
+        for (int i = 0; i < ID_LIST_SIZES.length; i++)
+        {
+            BY_IDS_SQL[i] = "select " + COLUMNS + " from Message where message_id in ("
+                    + String.join(", ", Collections.nCopies(ID_LIST_SIZES[i], "?")) + ") order by message_id";
+        }
+    }
+
+    private final JdbcTemplate jdbc = new JdbcTemplate();
+
     /**
      * Adds a message to the database.
      * @param message The message to add
      * @return The added message or null if insertion failed
      */
+    @Override
     public Message addMessage(Message message)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        Message added = null;
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("insert into Message(posted_by, message_text, time_posted_epoch) values (?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
-            ps.setInt(1, message.getPosted_by());
-            ps.setString(2, message.getMessage_text());
-            ps.setLong(3, message.getTime_posted_epoch());
+        Integer generatedID = jdbc.insertReturningKey("insert into Message(posted_by, message_text, time_posted_epoch) values (?, ?, ?)",
+                message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
 
-            ps.executeUpdate();
+        return generatedID == null ? null
+                : new Message(generatedID, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+    }
 
-            ResultSet generatedIDSet = ps.getGeneratedKeys();
-            if (generatedIDSet.next())
-            {
-                int generatedID = (int) generatedIDSet.getLong(1);
-                added = new Message(generatedID, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
-            }
+    /**
+     * Reserves a block of message IDs from the message_id sequence. Reserved IDs are never handed out again, even if
+     * they are never used.
+     * @param count The number of IDs to reserve
+     * @return The reserved IDs, or an empty array if reservation failed
+     */
+    @Override
+    public int[] reserveMessageIDs(int count)
+    {
+        List<Integer> reserved = jdbc.query("select next value for message_id_seq from system_range(1, ?)", row -> row.getInt(1), count);
+        if (reserved.size() != count)
+        {
+            return new int[0];
         }
-        catch (SQLException e)
+
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++)
         {
-            System.out.println(e.getMessage());
+            ids[i] = reserved.get(i);
         }
+        return ids;
+    }
 
-        return added;
+    /**
+     * Adds messages whose IDs have already been reserved with reserveMessageIDs. The messages are inserted as one
+     * JDBC batch in a single transaction, so either all of them are added or none are.
+     * @param messages The messages to add, each with its reserved message_id
+     * @return True if every message was added
+     */
+    @Override
+    public boolean addMessages(List<Message> messages)
+    {
+        return jdbc.batchUpdate("insert into Message(" + COLUMNS + ") values (?, ?, ?, ?)", messages, (ps, message) -> {
+            ps.setInt(1, message.getMessage_id());
+            ps.setInt(2, message.getPosted_by());
+            ps.setString(3, message.getMessage_text());
+            ps.setLong(4, message.getTime_posted_epoch());
+        });
     }
 
     /**
      * Retrieves all messages in the database.
      * @return A list of all messages that currently exist in the database
      */
+    @Override
     public List<Message> getAllMessages()
     {
-        Connection connection = ConnectionUtil.getConnection();
-        List<Message> messages = new ArrayList<>();
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("select message_id, posted_by, message_text, time_posted_epoch from Message");
-            ResultSet results = ps.executeQuery();
-            while (results.next())
-            {
-                int message_id = results.getInt("message_id");
-                int posted_by = results.getInt("posted_by");
-                String message_text = results.getString("message_text");
-                long time_posted_epoch = results.getLong("time_posted_epoch");
-                messages.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
-            }
-        }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
+        return jdbc.query("select " + COLUMNS + " from Message", MESSAGE_MAPPER);
+    }
+
+    /**
+     * Streams every message in the database to the handler one row at a time, so the caller never holds the whole
+     * table in memory. The query runs with H2's lazy execution so rows are produced as they are read rather than
+     * buffered up front, and at most socialmedia.messages.fetchSize rows are fetched per round trip.
+     * @param handler Called once for each message
+     * @throws IOException If the handler fails to write a message
+     */
+    @Override
+    public void forEachMessage(MessageHandler handler) throws IOException
+    {
+        jdbc.queryEach("select " + COLUMNS + " from Message", FETCH_SIZE, MESSAGE_MAPPER, handler);
+    }
 
-        return messages;
+    /**
+     * Retrieves one page of messages in ascending message_id order, starting after the given cursor. The query seeks
+     * on the primary key index rather than skipping rows with OFFSET, so every page costs the same to read.
+     * @param after Only messages with a message_id greater than this are returned
+     * @param limit The maximum number of messages to return
+     * @return Up to limit messages with message_id greater than after
+     */
+    @Override
+    public List<Message> getMessagesAfter(int after, int limit)
+    {
+        return jdbc.query("select " + COLUMNS + " from Message where message_id > ? order by message_id limit ?", MESSAGE_MAPPER, after, limit);
     }
-    
+
     /**
      * Queries the database for a message based on the message's ID.
      * @param message_id The ID of the message to get
      * @return The message with the given ID or null if none exists
      */
+    @Override
     public Message getMessageByID(int message_id)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        Message message = null;
-        try
+        return jdbc.queryOne("select " + COLUMNS + " from Message where message_id = ?", MESSAGE_MAPPER, message_id);
+    }
+
+    /**
+     * Queries the database for the messages with the given IDs, one primary key lookup per ID. The IDs are bound
+     * with setInt into "message_id in (?, ...)" lists of the sizes in ID_LIST_SIZES, so they are never boxed. Each
+     * statement takes the smallest list that holds the IDs still to fetch, or the largest, and pads it by repeating
+     * its last ID, so only those few statements are ever prepared and cached.
+     * @param message_ids The IDs of the messages to get, in ascending order
+     * @return The messages that exist, in ascending message_id order
+     */
+    @Override
+    public List<Message> getMessagesByIDs(int[] message_ids)
+    {
+        List<Message> found = new ArrayList<>(message_ids.length);
+        int from = 0;
+        while (from < message_ids.length)
         {
-            PreparedStatement ps = connection.prepareStatement("select message_id, posted_by, message_text, time_posted_epoch from Message where message_id = ?");
-            ps.setInt(1, message_id);
-            ResultSet result = ps.executeQuery();
-            if (result.next())
+            int list = 0;
+            while (list < ID_LIST_SIZES.length - 1 && ID_LIST_SIZES[list] < message_ids.length - from)
             {
-                int id = result.getInt("message_id");
-                int posted_by = result.getInt("posted_by");
-                String message_text = result.getString("message_text");
-                long time_posted_epoch = result.getLong("time_posted_epoch");
-
-                message = new Message(id, posted_by, message_text, time_posted_epoch);
+                list++;
             }
+            int size = ID_LIST_SIZES[list];
+            int start = from;
+            int last = Math.min(message_ids.length, from + size) - 1;
+            found.addAll(jdbc.query(BY_IDS_SQL[list], MESSAGE_MAPPER, ps -> {
+                for (int i = 0; i < size; i++)
+                {
+                    ps.setInt(i + 1, message_ids[Math.min(start + i, last)]);
+                }
+            }));
+            from = last + 1;
         }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
-        return message;
+        return found;
     }
 
     /**
-     * Deletes a message from the database based on the message's ID.
+     * Deletes a message from the database based on the message's ID. The deleted row is read back from H2's
+     * OLD TABLE delta table, so the delete and the read are a single statement.
      * @param message_id The ID of the message to delete
+     * @return The message as it was before deletion or null if no message with the given ID existed
      */
-    public void deleteMessageByID(int message_id)
+    @Override
+    public Message deleteMessageByID(int message_id)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("delete from Message where message_id = ?");
-            ps.setInt(1, message_id);
-            ps.executeUpdate();
-        }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
+        return jdbc.queryOne("select " + COLUMNS + " from old table (delete from Message where message_id = ?)", MESSAGE_MAPPER, message_id);
     }
 
     /**
-     * Updates the text of a message in the database based on the message's ID.
+     * Updates the text of a message in the database based on the message's ID. The updated row is read back from
+     * H2's FINAL TABLE delta table, so the update and the read are a single statement.
      * @param message_id The ID of the message to update
      * @param message_text The updated text
+     * @return The message as it is after the update or null if no message with the given ID exists
      */
-    public void updateMessageByID(int message_id, String message_text)
+    @Override
+    public Message updateMessageByID(int message_id, String message_text)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("update Message set message_text = ? where message_id = ?");
-            ps.setString(1, message_text);
-            ps.setInt(2, message_id);
-            ps.executeUpdate();
-        }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
+        return jdbc.queryOne("select " + COLUMNS + " from final table (update Message set message_text = ? where message_id = ?)", MESSAGE_MAPPER, message_text, message_id);
     }
 
     /**
@@ -151,30 +226,25 @@ public class MessageDAO
      * @param account_id The ID of the account that posted the messages to get
      * @return A list of messages posted by the account with the given ID
      */
+    @Override
     public List<Message> getMessagesByAccountID(int account_id)
     {
-        Connection connection = ConnectionUtil.getConnection();
-        List<Message> messages = new ArrayList<>();
-        try
-        {
-            PreparedStatement ps = connection.prepareStatement("select message_id, posted_by, message_text, time_posted_epoch from Message where posted_by = ?");
-            ps.setInt(1, account_id);
-            ResultSet results = ps.executeQuery();
-
-            while (results.next())
-            {
-                int message_id = results.getInt("message_id");
-                int posted_by = results.getInt("posted_by");
-                String message_text = results.getString("message_text");
-                long time_posted_epoch = results.getLong("time_posted_epoch");
-                messages.add(new Message(message_id, posted_by, message_text, time_posted_epoch));
-            }
-        }
-        catch (SQLException e)
-        {
-            System.out.println(e.getMessage());
-        }
+        return jdbc.query("select " + COLUMNS + " from Message where posted_by = ?", MESSAGE_MAPPER, account_id);
+    }
 
-        return messages;
+    /**
+     * Retrieves one page of the messages posted by a single account in ascending message_id order, starting after
+     * the given cursor. The query seeks to the cursor on the (posted_by, message_id) index and reads the page in
+     * index order, which is why it orders by posted_by as well, so H2 never sorts the account's messages.
+     * @param account_id The ID of the account that posted the messages to get
+     * @param after Only messages with a message_id greater than this are returned
+     * @param limit The maximum number of messages to return
+     * @return Up to limit messages posted by the account with message_id greater than after
+     */
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after, int limit)
+    {
+        return jdbc.query("select " + COLUMNS + " from Message where posted_by = ? and message_id > ? order by posted_by, message_id limit ?",
+                MESSAGE_MAPPER, account_id, after, limit);
     }
 }
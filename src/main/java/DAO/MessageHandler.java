@@ -0,0 +1,20 @@
+package DAO;
+
+import java.io.IOException;
+
+import Model.Message;
+
+/**
+ * Receives messages one at a time as they are read from the database, so callers can write them out without
+ * collecting them into a list first.
+ */
+@FunctionalInterface
+public interface MessageHandler extends RowHandler<Message>
+{
+    /**
+     * @param message The message read from the current row
+     * @throws IOException If the message cannot be written
+     */
+    @Override
+    void accept(Message message) throws IOException;
+}
@@ -0,0 +1,824 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Util.OffHeapLongArray;
+import Util.SortedIntMultimap;
+
+/**
+ * Stores messages in an append-only log of fixed-size segment files written through memory-mapped buffers. Every
+ * add, update and delete appends one record and nothing is rewritten in place, so a write costs one copy into the
+ * page cache instead of an H2 B-tree update.
+ *
+ * Each segment starts with an 8 byte header: a magic number and the highest message ID issued when the segment was
+ * created. Records follow back to back:
+ *
+ *   int length | int crc32 | byte type | int message_id | int posted_by | long time_posted_epoch | UTF-8 message_text
+ *
+ * where length and crc32 cover everything after them. PUT records carry a whole message and are written for adds
+ * and updates; DELETE and RESERVE records stop after message_id. A DELETE is a tombstone for the message, and a
+ * RESERVE records the highest ID handed out by reserveMessageIDs so IDs are never reused after a restart. The length
+ * is written last, and a length of 0 marks the end of a segment, so a record torn by a crash is never read back.
+ *
+ * An off-heap array maps each message_id to the location of its latest PUT record: the segment number in the high
+ * 32 bits and the offset in the low 32 bits. On startup the segments are replayed in order to rebuild that array and
+ * the per-account index of message IDs, and anything after a torn record is discarded.
+ *
+ * Updates and deletes leave the older record behind as garbage. A background compactor copies the live records out
+ * of any sealed segment whose garbage passes a threshold and deletes the segment. Tombstones are carried forward
+ * unless the segment being compacted is the oldest, since only then can no older copy of the message remain.
+ *
+ * Reads run concurrently under a read lock; appends and compaction take the write lock. forEachMessage copies the
+ * messages out a batch at a time and calls its handler outside the lock, so a slow reader never holds up writers.
+ * A write that fails is thrown as a DataAccessException rather than returned as a missing message. Records reach the
+ * page cache as soon as they are appended, so they survive the process dying, but they only reach the disk when the
+ * operating system writes them back or when the log is closed, unless forceOnWrite is set.
+ */
+public class MessageLogRepository implements MessageRepository
+{
+    private static final Logger logger = LoggerFactory.getLogger(MessageLogRepository.class);
+
+    private static final int MAGIC = 0x4D4C4F47;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int PUT_FIXED_BYTES = 17;
+    private static final int ID_ONLY_BYTES = 5;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte RESERVE = 3;
+
+    /**
+     * The largest PUT record: message text is under 255 chars, each at most 3 UTF-8 bytes.
+     */
+    private static final int MAX_RECORD_BYTES = RECORD_HEADER_BYTES + PUT_FIXED_BYTES + 255 * 3;
+
+    /**
+     * The number of messages forEachMessage copies out under the read lock at a time.
+     */
+    private static final int STREAM_BATCH_SIZE = 256;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean forceOnWrite;
+    private final int compactionGarbagePercent;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapLongArray locations = new OffHeapLongArray(1024);
+    private final SortedIntMultimap messageIDsByAccount = new SortedIntMultimap();
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private int lastMessageID;
+
+    private final ScheduledExecutorService compactor;
+
+    /**
+     * Opens the log in a directory, creating the directory and the first segment if needed, and rebuilds the index
+     * from the segments already there.
+     * @param directory The directory holding the segment files
+     * @param segmentBytes The size of each segment file
+     * @param forceOnWrite Whether every append is forced to disk before it returns
+     * @param compactionIntervalMillis How often the compactor looks for segments to compact, or 0 to only compact
+     *  when compact() is called
+     * @param compactionGarbagePercent The share of a sealed segment that must be garbage before it is compacted
+     * @throws IOException If the directory or a segment cannot be read or created
+     */
+    public MessageLogRepository(Path directory, int segmentBytes, boolean forceOnWrite, long compactionIntervalMillis,
+                                int compactionGarbagePercent) throws IOException
+    {
+        if (segmentBytes < SEGMENT_HEADER_BYTES + MAX_RECORD_BYTES)
+        {
+            throw new IllegalArgumentException("segmentBytes must be at least " + (SEGMENT_HEADER_BYTES + MAX_RECORD_BYTES));
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.forceOnWrite = forceOnWrite;
+        this.compactionGarbagePercent = compactionGarbagePercent;
+
+        Files.createDirectories(directory);
+        recover();
+
+        if (compactionIntervalMillis > 0)
+        {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MessageLogCompactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            compactor = null;
+        }
+    }
+
+    @Override
+    public Message addMessage(Message message)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Message added = new Message(lastMessageID + 1, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
+            put(added);
+            return added;
+        }
+        catch (IOException e)
+        {
+            throw new DataAccessException("Failed to append a message to " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int[] reserveMessageIDs(int count)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            int first = lastMessageID + 1;
+            append(RESERVE, lastMessageID + count, 0, 0, null);
+            lastMessageID += count;
+
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                ids[i] = first + i;
+            }
+            return ids;
+        }
+        catch (IOException e)
+        {
+            throw new DataAccessException("Failed to reserve message IDs in " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends messages with reserved IDs. If any ID is already taken nothing is added; if an append fails part way,
+     * the messages already appended are deleted again and the failure is thrown.
+     * @param messages The messages to add, each with its reserved message_id
+     * @return True if every message was added, false if an ID was already taken
+     * @throws DataAccessException If an append failed
+     */
+    @Override
+    public boolean addMessages(List<Message> messages)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            for (Message message : messages)
+            {
+                if (locations.get(message.getMessage_id()) != 0)
+                {
+                    return false;
+                }
+            }
+
+            int appended = 0;
+            try
+            {
+                for (Message message : messages)
+                {
+                    put(message);
+                    appended++;
+                }
+                return true;
+            }
+            catch (IOException e)
+            {
+                for (int i = 0; i < appended; i++)
+                {
+                    delete(messages.get(i).getMessage_id());
+                }
+                throw e;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new DataAccessException("Failed to append messages to " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessages()
+    {
+        return getMessagesAfter(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Hands every message to the handler in message_id order. Messages are copied out STREAM_BATCH_SIZE at a time
+     * under the read lock and handed over after it is released, so a handler writing to a slow client never holds
+     * up writers, and through them the readers queued behind a waiting writer. Writes that land while the handler
+     * runs are seen if they come after the current batch, as with H2's lazy execution.
+     */
+    @Override
+    public void forEachMessage(MessageHandler handler) throws IOException
+    {
+        int after = 0;
+        List<Message> batch;
+        do
+        {
+            batch = getMessagesAfter(after, STREAM_BATCH_SIZE);
+            for (Message message : batch)
+            {
+                handler.accept(message);
+            }
+            if (!batch.isEmpty())
+            {
+                after = batch.get(batch.size() - 1).getMessage_id();
+            }
+        }
+        while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int after, int limit)
+    {
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        lock.readLock().lock();
+        try
+        {
+            for (int message_id = Math.max(after, 0) + 1; message_id <= lastMessageID && page.size() < limit; message_id++)
+            {
+                long location = locations.get(message_id);
+                if (location != 0)
+                {
+                    page.add(read(location));
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    @Override
+    public Message getMessageByID(int message_id)
+    {
+        lock.readLock().lock();
+        try
+        {
+            long location = locations.get(message_id);
+            return location == 0 ? null : read(location);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessagesByIDs(int[] message_ids)
+    {
+        List<Message> found = new ArrayList<>(message_ids.length);
+        lock.readLock().lock();
+        try
+        {
+            for (int message_id : message_ids)
+            {
+                long location = locations.get(message_id);
+                if (location != 0)
+                {
+                    found.add(read(location));
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    @Override
+    public Message deleteMessageByID(int message_id)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            return delete(message_id);
+        }
+        catch (IOException e)
+        {
+            throw new DataAccessException("Failed to append a tombstone for message " + message_id + " to " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Message updateMessageByID(int message_id, String message_text)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            long location = locations.get(message_id);
+            if (location == 0)
+            {
+                return null;
+            }
+
+            Message current = read(location);
+            Message updated = new Message(message_id, current.getPosted_by(), message_text, current.getTime_posted_epoch());
+            put(updated);
+            return updated;
+        }
+        catch (IOException e)
+        {
+            throw new DataAccessException("Failed to append an update of message " + message_id + " to " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean indexesMessagesByAccount()
+    {
+        return true;
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountID(int account_id)
+    {
+        return getMessagesByAccountIDAfter(account_id, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesByAccountIDAfter(int account_id, int after, int limit)
+    {
+        List<Message> page = new ArrayList<>();
+        lock.readLock().lock();
+        try
+        {
+            for (int message_id : messageIDsByAccount.getAfter(account_id, after, limit))
+            {
+                page.add(read(locations.get(message_id)));
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return page;
+    }
+
+    /**
+     * Compacts every sealed segment whose garbage has passed the threshold. Runs on the compactor thread, and can
+     * also be called directly. Each segment is compacted under the write lock, so writes wait while one segment's
+     * live records are copied.
+     */
+    public void compact()
+    {
+        List<Integer> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try
+        {
+            for (Segment segment : segments.values())
+            {
+                int used = segment.writePosition - SEGMENT_HEADER_BYTES;
+                if (segment != active && used > 0 && segment.garbageBytes * 100 >= (long) used * compactionGarbagePercent)
+                {
+                    candidates.add(segment.number);
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        for (int number : candidates)
+        {
+            lock.writeLock().lock();
+            try
+            {
+                Segment segment = segments.get(number);
+                if (segment != null && segment != active)
+                {
+                    compact(segment);
+                }
+            }
+            catch (IOException e)
+            {
+                logger.error("Failed to compact segment " + number + " of " + directory, e);
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return The number of segment files in the log
+     */
+    public int getSegmentCount()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return segments.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops the compactor, forces every segment to disk and closes the segment files.
+     */
+    @Override
+    public void close()
+    {
+        if (compactor != null)
+        {
+            compactor.shutdownNow();
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            for (Segment segment : segments.values())
+            {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            segments.clear();
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to close the message log in " + directory, e);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a PUT record for a message and points the index at it. Called with the write lock held.
+     */
+    private void put(Message message) throws IOException
+    {
+        long previous = locations.get(message.getMessage_id());
+        long location = append(PUT, message.getMessage_id(), message.getPosted_by(), message.getTime_posted_epoch(),
+                message.getMessage_text().getBytes(StandardCharsets.UTF_8));
+        applyPut(message.getMessage_id(), message.getPosted_by(), location, previous);
+    }
+
+    /**
+     * Appends a tombstone for a message and removes it from the index. Called with the write lock held.
+     * @return The deleted message or null if it did not exist
+     */
+    private Message delete(int message_id) throws IOException
+    {
+        long location = locations.get(message_id);
+        if (location == 0)
+        {
+            return null;
+        }
+
+        Message deleted = read(location);
+        append(DELETE, message_id, 0, 0, null);
+        applyDelete(message_id, deleted.getPosted_by(), location);
+        return deleted;
+    }
+
+    private void applyPut(int message_id, int posted_by, long location, long previous)
+    {
+        if (previous != 0)
+        {
+            addGarbage(previous);
+        }
+        lastMessageID = Math.max(lastMessageID, message_id);
+        locations.set(message_id, location);
+        messageIDsByAccount.add(posted_by, message_id);
+    }
+
+    private void applyDelete(int message_id, int posted_by, long previous)
+    {
+        addGarbage(previous);
+        locations.set(message_id, 0);
+        messageIDsByAccount.remove(posted_by, message_id);
+    }
+
+    private void addGarbage(long location)
+    {
+        Segment segment = segments.get(segmentNumber(location));
+        segment.garbageBytes += RECORD_HEADER_BYTES + segment.buffer.getInt(offset(location));
+    }
+
+    /**
+     * Appends one record to the active segment, starting a new segment first if the record does not fit. The
+     * length is written after the rest of the record so a crash mid-append leaves the end-of-segment marker intact.
+     * @return The location of the record
+     */
+    private long append(byte type, int message_id, int posted_by, long time_posted_epoch, byte[] text) throws IOException
+    {
+        int length = text == null ? ID_ONLY_BYTES : PUT_FIXED_BYTES + text.length;
+        if (active.writePosition + RECORD_HEADER_BYTES + length > active.buffer.capacity())
+        {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.writePosition;
+        int payload = offset + RECORD_HEADER_BYTES;
+        buffer.put(payload, type);
+        buffer.putInt(payload + 1, message_id);
+        if (text != null)
+        {
+            buffer.putInt(payload + 5, posted_by);
+            buffer.putLong(payload + 9, time_posted_epoch);
+            buffer.put(payload + PUT_FIXED_BYTES, text);
+        }
+        buffer.putInt(offset + 4, checksum(buffer, payload, length));
+        buffer.putInt(offset, length);
+        if (forceOnWrite)
+        {
+            buffer.force(offset, RECORD_HEADER_BYTES + length);
+        }
+
+        active.writePosition = payload + length;
+        return location(active.number, offset);
+    }
+
+    /**
+     * Copies a PUT record to the active segment unchanged and points the index at the copy.
+     */
+    private void copy(Segment from, int offset, int length, int message_id) throws IOException
+    {
+        if (active.writePosition + RECORD_HEADER_BYTES + length > active.buffer.capacity())
+        {
+            roll();
+        }
+
+        int to = active.writePosition;
+        active.buffer.put(to + RECORD_HEADER_BYTES, from.buffer, offset + RECORD_HEADER_BYTES, length);
+        active.buffer.putInt(to + 4, from.buffer.getInt(offset + 4));
+        active.buffer.putInt(to, length);
+        active.writePosition = to + RECORD_HEADER_BYTES + length;
+        if (message_id != 0)
+        {
+            locations.set(message_id, location(active.number, to));
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one.
+     */
+    private void roll() throws IOException
+    {
+        if (forceOnWrite)
+        {
+            active.buffer.force();
+        }
+        active = Segment.create(directory, active.number + 1, segmentBytes, lastMessageID);
+        segments.put(active.number, active);
+    }
+
+    /**
+     * Copies the live records out of a sealed segment and deletes it. A PUT record is live if the index still points
+     * at it. Tombstones are copied unless this is the oldest segment. Called with the write lock held.
+     */
+    private void compact(Segment segment) throws IOException
+    {
+        boolean oldest = segments.firstKey() == segment.number;
+        MappedByteBuffer buffer = segment.buffer;
+        for (int offset = SEGMENT_HEADER_BYTES; offset < segment.writePosition; )
+        {
+            int length = buffer.getInt(offset);
+            byte type = buffer.get(offset + RECORD_HEADER_BYTES);
+            int message_id = buffer.getInt(offset + RECORD_HEADER_BYTES + 1);
+            if (type == PUT && locations.get(message_id) == location(segment.number, offset))
+            {
+                copy(segment, offset, length, message_id);
+            }
+            else if (type == DELETE && !oldest)
+            {
+                copy(segment, offset, length, 0);
+            }
+            offset += RECORD_HEADER_BYTES + length;
+        }
+
+        if (forceOnWrite)
+        {
+            active.buffer.force();
+        }
+        segments.remove(segment.number);
+        segment.channel.close();
+        Files.delete(segment.path);
+    }
+
+    /**
+     * Opens every segment in the directory in order and replays its records, or creates the first segment if there
+     * are none.
+     */
+    private void recover() throws IOException
+    {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log"))
+        {
+            for (Path path : stream)
+            {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+
+        for (Path path : paths)
+        {
+            Segment segment = Segment.open(path);
+            segments.put(segment.number, segment);
+            replay(segment);
+            active = segment;
+        }
+
+        if (active == null)
+        {
+            active = Segment.create(directory, 1, segmentBytes, 0);
+            segments.put(active.number, active);
+        }
+    }
+
+    /**
+     * Replays a segment's records into the index and finds where the next append goes. A record that is cut short
+     * or fails its checksum ends the segment, and everything after it is zeroed so it can never be mistaken for a
+     * record later.
+     */
+    private void replay(Segment segment)
+    {
+        MappedByteBuffer buffer = segment.buffer;
+        lastMessageID = Math.max(lastMessageID, buffer.getInt(4));
+
+        int offset = SEGMENT_HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= buffer.capacity())
+        {
+            int length = buffer.getInt(offset);
+            int payload = offset + RECORD_HEADER_BYTES;
+            if (length == 0)
+            {
+                break;
+            }
+            if (length < ID_ONLY_BYTES || length > buffer.capacity() - payload
+                    || checksum(buffer, payload, length) != buffer.getInt(offset + 4))
+            {
+                logger.warn("Discarding torn record at offset " + offset + " of " + segment.path
+                        + " and everything after it");
+                for (int i = offset; i < buffer.capacity(); i++)
+                {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+
+            byte type = buffer.get(payload);
+            int message_id = buffer.getInt(payload + 1);
+            lastMessageID = Math.max(lastMessageID, message_id);
+            long previous = locations.get(message_id);
+            if (type == PUT)
+            {
+                applyPut(message_id, buffer.getInt(payload + 5), location(segment.number, offset), previous);
+            }
+            else if (type == DELETE && previous != 0)
+            {
+                applyDelete(message_id, read(previous).getPosted_by(), previous);
+            }
+            offset = payload + length;
+        }
+        segment.writePosition = offset;
+    }
+
+    /**
+     * Decodes the PUT record at a location.
+     */
+    private Message read(long location)
+    {
+        MappedByteBuffer buffer = segments.get(segmentNumber(location)).buffer;
+        int payload = offset(location) + RECORD_HEADER_BYTES;
+        int length = buffer.getInt(offset(location));
+        byte[] text = new byte[length - PUT_FIXED_BYTES];
+        buffer.get(payload + PUT_FIXED_BYTES, text);
+        return new Message(buffer.getInt(payload + 1), buffer.getInt(payload + 5), new String(text, StandardCharsets.UTF_8),
+                buffer.getLong(payload + 9));
+    }
+
+    private int checksum(MappedByteBuffer buffer, int payload, int length)
+    {
+        crc.reset();
+        crc.update(buffer.slice(payload, length));
+        return (int) crc.getValue();
+    }
+
+    private static long location(int segmentNumber, int offset)
+    {
+        return ((long) segmentNumber << 32) | offset;
+    }
+
+    private static int segmentNumber(long location)
+    {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location)
+    {
+        return (int) location;
+    }
+
+    /**
+     * One segment file and the buffer it is mapped into.
+     */
+    private static final class Segment
+    {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        /**
+         * The offset the next record is appended at.
+         */
+        int writePosition;
+        /**
+         * The bytes taken up by records that have been superseded or deleted.
+         */
+        long garbageBytes;
+
+        private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer)
+        {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Creates and maps a new segment file and writes its header.
+         */
+        static Segment create(Path directory, int number, int segmentBytes, int lastMessageID) throws IOException
+        {
+            Path path = directory.resolve(String.format("segment-%010d.log", number));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(number, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segment.buffer.putInt(4, lastMessageID);
+            segment.buffer.putInt(0, MAGIC);
+            segment.writePosition = SEGMENT_HEADER_BYTES;
+            return segment;
+        }
+
+        /**
+         * Maps an existing segment file at its current size.
+         */
+        static Segment open(Path path) throws IOException
+        {
+            String name = path.getFileName().toString();
+            int number = Integer.parseInt(name.substring("segment-".length(), name.length() - ".log".length()));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(number, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            if (segment.buffer.capacity() < SEGMENT_HEADER_BYTES || segment.buffer.getInt(0) != MAGIC)
+            {
+                channel.close();
+                throw new IOException(path + " is not a message log segment");
+            }
+            return segment;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package DAO;
+
+import java.io.IOException;
+import java.util.List;
+
+import Model.Message;
+
+/**
+ * Stores messages. MessageDAO keeps them in H2 and InMemoryMessageRepository keeps them in concurrent maps; which
+ * one the application uses is chosen by StorageEngine at startup. Repositories do not validate messages: the
+ * MessageService checks the text and the posting account before anything is added.
+ */
+public interface MessageRepository
+{
+    /**
+     * Adds a message with a newly generated ID.
+     * @param message The message to add
+     * @return The added message or null if insertion failed
+     */
+    Message addMessage(Message message);
+
+    /**
+     * Reserves a block of message IDs. Reserved IDs are never handed out again, even if they are never used.
+     * @param count The number of IDs to reserve
+     * @return The reserved IDs, or an empty array if reservation failed
+     */
+    int[] reserveMessageIDs(int count);
+
+    /**
+     * Adds messages whose IDs have already been reserved with reserveMessageIDs. Either all of them are added or
+     * none are.
+     * @param messages The messages to add, each with its reserved message_id
+     * @return True if every message was added
+     */
+    boolean addMessages(List<Message> messages);
+
+    /**
+     * Gets every message.
+     * @return A list of all messages that currently exist
+     */
+    List<Message> getAllMessages();
+
+    /**
+     * Hands every message to the handler one at a time, so the caller never holds them all in memory.
+     * @param handler Called once for each message
+     * @throws IOException If the handler fails to write a message
+     */
+    void forEachMessage(MessageHandler handler) throws IOException;
+
+    /**
+     * Gets one page of messages in ascending message_id order, starting after the given cursor.
+     * @param after Only messages with a message_id greater than this are returned
+     * @param limit The maximum number of messages to return
+     * @return Up to limit messages with message_id greater than after
+     */
+    List<Message> getMessagesAfter(int after, int limit);
+
+    /**
+     * Gets a message based on the message's ID.
+     * @param message_id The ID of the message to get
+     * @return The message with the given ID or null if none exists
+     * @throws DataAccessException If the message could not be read. Callers cache null as a missing message, so a
+     *  failure must never be returned as null.
+     */
+    Message getMessageByID(int message_id);
+
+    /**
+     * Gets the messages with the given IDs. IDs with no message are skipped.
+     * @param message_ids The IDs of the messages to get, in ascending order
+     * @return The messages that exist, in ascending message_id order
+     */
+    List<Message> getMessagesByIDs(int[] message_ids);
+
+    /**
+     * Deletes a message based on the message's ID.
+     * @param message_id The ID of the message to delete
+     * @return The message as it was before deletion or null if no message with the given ID existed
+     */
+    Message deleteMessageByID(int message_id);
+
+    /**
+     * Updates the text of a message based on the message's ID.
+     * @param message_id The ID of the message to update
+     * @param message_text The updated text
+     * @return The message as it is after the update or null if no message with the given ID exists
+     */
+    Message updateMessageByID(int message_id, String message_text);
+
+    /**
+     * Gets the messages posted by an account.
+     * @param account_id The ID of the account that posted the messages to get
+     * @return A list of messages posted by the account with the given ID
+     */
+    List<Message> getMessagesByAccountID(int account_id);
+
+    /**
+     * Gets one page of the messages posted by a single account in ascending message_id order, starting after the
+     * given cursor.
+     * @param account_id The ID of the account that posted the messages to get
+     * @param after Only messages with a message_id greater than this are returned
+     * @param limit The maximum number of messages to return
+     * @return Up to limit messages posted by the account with message_id greater than after
+     */
+    List<Message> getMessagesByAccountIDAfter(int account_id, int after, int limit);
+
+    /**
+     * @return True if the repository keeps its own in-memory index of each account's message IDs, so account
+     *  message reads never scan and the MessageService needs no index of its own. Repositories backed by a database
+     *  keep this default, which returns false.
+     */
+    default boolean indexesMessagesByAccount()
+    {
+        return false;
+    }
+
+    /**
+     * Releases any files or threads the repository holds. Repositories that hold none keep this default, which
+     * does nothing.
+     */
+    default void close()
+    {
+    }
+}
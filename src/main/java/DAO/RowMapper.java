@@ -0,0 +1,33 @@
+package DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Turns the current row of a ResultSet into an object. Mappers only read the current row; JdbcTemplate moves the
+ * cursor and closes the ResultSet.
+ *
+ * Before reading any rows, JdbcTemplate calls prepare once per ResultSet and maps every row with the mapper it
+ * returns. Mappers that read many rows override prepare to look their columns up once and read each row by index.
+ * @param <T> The type each row is mapped to
+ */
+@FunctionalInterface
+public interface RowMapper<T>
+{
+    /**
+     * @param row The ResultSet, positioned on the row to map
+     * @return The object for the row
+     * @throws SQLException If a column cannot be read
+     */
+    T mapRow(ResultSet row) throws SQLException;
+
+    /**
+     * @param results The ResultSet about to be read, before its first row
+     * @return The mapper to use for every row of the ResultSet; this mapper unless overridden
+     * @throws SQLException If the ResultSet's columns cannot be resolved
+     */
+    default RowMapper<T> prepare(ResultSet results) throws SQLException
+    {
+        return this;
+    }
+}
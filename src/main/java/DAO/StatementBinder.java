@@ -0,0 +1,18 @@
+package DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Sets the parameters of a statement itself, for queries whose parameters are primitives that should be bound with
+ * setInt or setLong rather than boxed into an Object array.
+ */
+@FunctionalInterface
+public interface StatementBinder
+{
+    /**
+     * @param ps The statement to set the parameters of
+     * @throws SQLException If a parameter cannot be set
+     */
+    void bind(PreparedStatement ps) throws SQLException;
+}
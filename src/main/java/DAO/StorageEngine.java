@@ -0,0 +1,81 @@
+package DAO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+import Util.Config;
+
+/**
+ * The storage engines the services can run on, chosen at startup with socialmedia.storage.engine.
+ *
+ * H2 stores everything in the H2 database through AccountDAO and MessageDAO. MEMORY keeps everything in
+ * InMemoryAccountRepository and InMemoryMessageRepository and never writes to H2, which makes reads and writes
+ * sub-microsecond but loses every change when the application stops. It is meant for edge caches and load tests.
+ * Unless socialmedia.storage.memory.loadFromDatabase is false, MEMORY starts from a copy of what is in H2, taken
+ * when each repository is first used; otherwise it starts empty and never opens the database.
+ *
+ * LOG keeps accounts in H2 and messages in a MessageLogRepository under socialmedia.storage.log.directory, which is
+ * durable and replayed on startup. It does not read the messages already in H2.
+ */
+public enum StorageEngine
+{
+    H2,
+    MEMORY,
+    LOG;
+
+    /**
+     * @return The engine named by socialmedia.storage.engine, or H2 if it is unset or unknown
+     */
+    public static StorageEngine configured()
+    {
+        return Config.getEnum("storage.engine", StorageEngine.class, H2);
+    }
+
+    /**
+     * Creates an account repository on this engine. Services that need to see each other's accounts, such as the
+     * AccountService and the MessageService's account existence check, must share one repository.
+     * @return A new account repository
+     */
+    public AccountRepository createAccountRepository()
+    {
+        if (this != MEMORY)
+        {
+            return new AccountDAO();
+        }
+        return loadFromDatabase() ? new InMemoryAccountRepository(new AccountDAO()) : new InMemoryAccountRepository();
+    }
+
+    /**
+     * Creates a message repository on this engine.
+     * @return A new message repository
+     */
+    public MessageRepository createMessageRepository()
+    {
+        if (this == H2)
+        {
+            return new MessageDAO();
+        }
+        if (this == LOG)
+        {
+            try
+            {
+                return new MessageLogRepository(Paths.get(Config.getString("storage.log.directory", "./h2/message-log")),
+                        Config.getInt("storage.log.segmentBytes", 64 * 1024 * 1024),
+                        Config.getBoolean("storage.log.forceOnWrite", false),
+                        Config.getLong("storage.log.compactionIntervalMillis", 30000),
+                        Config.getInt("storage.log.compactionGarbagePercent", 50));
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return loadFromDatabase() ? new InMemoryMessageRepository(new MessageDAO()) : new InMemoryMessageRepository();
+    }
+
+    private static boolean loadFromDatabase()
+    {
+        return Config.getBoolean("storage.memory.loadFromDatabase", true);
+    }
+}
@@ -0,0 +1,63 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of importing one entry of a bulk message import.
+ */
+public class BulkMessageResult {
+    /**
+     * The zero-based position of the entry in the imported body.
+     */
+    public int index;
+    /**
+     * The id given to the imported message, or null if the entry was not imported.
+     */
+    public Integer message_id;
+    /**
+     * Why the entry was not imported, or null if it was.
+     */
+    public String error;
+    /**
+     * @param index
+     * @param message_id
+     * @param error
+     */
+    public BulkMessageResult(int index, Integer message_id, String error) {
+        this.index = index;
+        this.message_id = message_id;
+        this.error = error;
+    }
+    /**
+     * @param index
+     * @param message_id
+     * @return A result for an entry that was imported
+     */
+    public static BulkMessageResult imported(int index, int message_id) {
+        return new BulkMessageResult(index, message_id, null);
+    }
+    /**
+     * @param index
+     * @param error
+     * @return A result for an entry that was not imported
+     */
+    public static BulkMessageResult rejected(int index, String error) {
+        return new BulkMessageResult(index, null, error);
+    }
+    /**
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @return message_id
+     */
+    public Integer getMessage_id() {
+        return message_id;
+    }
+    /**
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,37 @@
+package Model;
+
+import java.util.List;
+
+/**
+ * This is a class that models one page of messages returned by a keyset-paginated query.
+ */
+public class MessagePage {
+    /**
+     * The messages on this page, in ascending message_id order.
+     */
+    public List<Message> messages;
+    /**
+     * The message_id to pass as the "after" cursor to get the next page, or null if this is the last page.
+     */
+    public Integer next_cursor;
+    /**
+     * @param messages
+     * @param next_cursor
+     */
+    public MessagePage(List<Message> messages, Integer next_cursor) {
+        this.messages = messages;
+        this.next_cursor = next_cursor;
+    }
+    /**
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+    /**
+     * @return next_cursor
+     */
+    public Integer getNext_cursor() {
+        return next_cursor;
+    }
+}
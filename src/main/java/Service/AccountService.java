@@ -1,29 +1,89 @@
 package Service;
 
-import DAO.AccountDAO;
+import java.util.concurrent.CompletableFuture;
+
+import DAO.AccountRepository;
+import DAO.DataAccessException;
+import DAO.StorageEngine;
 import Model.Account;
+import Util.Config;
+import Util.DatabaseExecutor;
+import Util.LruCache;
+import Util.Metrics;
 
 public class AccountService {
-    private AccountDAO accountDAO;
+    private AccountRepository accountDAO;
+    /**
+     * Accounts by username, filled on registration and on lookups that miss.
+     */
+    private LruCache<String, Account> accountsByUsername;
+    /**
+     * Usernames recently looked up and not found. Kept apart from accountsByUsername so that a flood of lookups
+     * for made-up usernames can only evict other unknown usernames, never real accounts.
+     */
+    private LruCache<String, Boolean> unknownUsernames;
 
+    /**
+     * Creates an AccountService on the configured StorageEngine.
+     */
     public AccountService()
     {
-        accountDAO = new AccountDAO();
+        this(StorageEngine.configured().createAccountRepository());
     }
 
-    public AccountService(AccountDAO accountDAO)
+    /**
+     * @param accountDAO The repository accounts are stored in, an AccountDAO on the H2 engine
+     */
+    public AccountService(AccountRepository accountDAO)
     {
         this.accountDAO = accountDAO;
+        this.accountsByUsername = new LruCache<>(Config.getInt("accounts.cache.maxSize", 10000),
+                Config.getLong("accounts.cache.ttlMillis", 300000));
+        this.unknownUsernames = new LruCache<>(Config.getInt("accounts.negativeCache.maxSize", 10000),
+                Config.getLong("accounts.negativeCache.ttlMillis", 30000));
+        Metrics.registerCache("accounts", accountsByUsername);
+        Metrics.registerCache("unknown_usernames", unknownUsernames);
     }
 
     /**
-     * Uses the AccountDAO to get an account based on the account's username.
+     * Uses the AccountDAO to get an account based on the account's username. Accounts and unknown usernames are
+     * served from the username caches when possible and only looked up through the AccountDAO on a miss. A username
+     * is only cached as unknown when the AccountDAO answers that no such account exists; if it fails, nothing is
+     * cached, so a database outage during a burst of logins cannot lock real users out once it is over.
      * @param username The username of the Account to get
-     * @return The account returned by the AccountDAO
+     * @return The account returned by the AccountDAO, or null if the username is null
+     * @throws DataAccessException If the account could not be read
      */
     public Account getAccountByUsername(String username)
     {
-        return accountDAO.getAccountByUsername(username);
+        if (username == null)
+        {
+            // A request body without a username matches no account, and null cannot be a cache key
+            return null;
+        }
+
+        Account account = accountsByUsername.getIfPresent(username, null);
+        if (account != null || unknownUsernames.getIfPresent(username, Boolean.FALSE))
+        {
+            return account;
+        }
+
+        account = accountDAO.getAccountByUsername(username);
+        if (account != null)
+        {
+            accountsByUsername.put(username, account);
+        }
+        else
+        {
+            unknownUsernames.put(username, Boolean.TRUE);
+            // A registration for this username may have finished while the lookup ran. Registration caches the
+            // account before clearing the negative entry, so checking again here catches that case.
+            if (accountsByUsername.getIfPresent(username, null) != null)
+            {
+                unknownUsernames.invalidate(username);
+            }
+        }
+        return account;
     }
 
     /**
@@ -38,9 +98,14 @@ public class AccountService {
     {
         Account added = null;
         
-        if (!account.getUsername().isEmpty() && account.getPassword().length() >= 4 && accountDAO.getAccountByUsername(account.getUsername()) == null)
+        if (!account.getUsername().isEmpty() && account.getPassword().length() >= 4 && getAccountByUsername(account.getUsername()) == null)
         {
             added = accountDAO.addAccount(account);
+            if (added != null)
+            {
+                accountsByUsername.put(added.getUsername(), added);
+                unknownUsernames.invalidate(added.getUsername());
+            }
         }
 
         return added;
@@ -54,7 +119,7 @@ public class AccountService {
     public Account loginAccount(Account account)
     {
         Account loggedIn = null;
-        Account matchedUsername = accountDAO.getAccountByUsername(account.getUsername());
+        Account matchedUsername = getAccountByUsername(account.getUsername());
         if (matchedUsername != null && matchedUsername.getPassword().equals(account.getPassword()))
         {
             loggedIn = matchedUsername;
@@ -62,4 +127,40 @@ public class AccountService {
 
         return loggedIn;
     }
+
+    /**
+     * Runs addAccount on the DatabaseExecutor.
+     * @param account The account to add
+     * @return A future that completes with the added account or null if adding failed
+     */
+    public CompletableFuture<Account> addAccountAsync(Account account)
+    {
+        return DatabaseExecutor.supply(() -> addAccount(account));
+    }
+
+    /**
+     * Runs loginAccount on the DatabaseExecutor.
+     * @param account The account with credentials to check
+     * @return A future that completes with the matching account or null if credentials don't match
+     */
+    public CompletableFuture<Account> loginAccountAsync(Account account)
+    {
+        return DatabaseExecutor.supply(() -> loginAccount(account));
+    }
+
+    /**
+     * @return The cache of accounts by username, for reporting its hit rate and evictions
+     */
+    public LruCache<String, Account> getAccountCache()
+    {
+        return accountsByUsername;
+    }
+
+    /**
+     * @return The cache of unknown usernames, for reporting its hit rate and evictions
+     */
+    public LruCache<String, Boolean> getUnknownUsernameCache()
+    {
+        return unknownUsernames;
+    }
 }
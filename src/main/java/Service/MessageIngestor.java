@@ -0,0 +1,434 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.MessageRepository;
+import Model.Message;
+
+/**
+ * Write-behind ingest for new messages. Callers submit messages to a bounded queue and a single worker thread inserts
+ * them in JDBC batches of up to batchSize rows, waiting at most maxDelayMillis after the first message of a batch for
+ * more to arrive. One commit then covers the whole batch instead of one commit per message. With a delay of 0 the
+ * worker inserts whatever is queued at once, and batches still form from the messages that arrive while the previous
+ * batch is being inserted. A delay only helps when callers arrive faster than a batch can be inserted.
+ *
+ * When the queue is full, submit() waits up to enqueueTimeoutMillis for space and then rejects the message, so a
+ * database that cannot keep up slows callers down instead of letting the queue grow without bound.
+ *
+ * Messages passed to submit() must already be validated. The ingestor only assigns IDs and inserts.
+ */
+public class MessageIngestor
+{
+    /**
+     * When a submitted message is acknowledged.
+     */
+    public enum Durability
+    {
+        /**
+         * The future completes after the batch holding the message is committed. A message the database rejects
+         * completes with null, and one that could not be inserted because the database failed completes
+         * exceptionally with the DataAccessException.
+         */
+        COMMIT,
+        /**
+         * The future completes as soon as the message is queued, with an ID reserved up front. Messages still queued
+         * when the process dies are lost. A message that later fails to insert is logged and reported to the
+         * Listener, so anything built from it can be dropped.
+         */
+        ENQUEUE
+    }
+
+    /**
+     * Told when a message becomes visible to readers and when an acknowledged message turns out to be lost. Both
+     * calls for one message are made in that order, so a lost message is never reported before it is acknowledged.
+     */
+    public interface Listener
+    {
+        /**
+         * Called for each message before its caller is answered: in COMMIT mode on the worker thread once its batch
+         * is committed, and in ENQUEUE mode on the submitting thread before the message is queued.
+         * @param message The message with its ID
+         */
+        void acknowledged(Message message);
+
+        /**
+         * Called in ENQUEUE mode for an acknowledged message that will not be inserted, because its batch failed or
+         * the queue rejected it.
+         * @param message The message as it was acknowledged
+         */
+        void lost(Message message);
+    }
+
+    private static final Listener NO_LISTENER = new Listener()
+    {
+        @Override
+        public void acknowledged(Message message)
+        {
+        }
+
+        @Override
+        public void lost(Message message)
+        {
+        }
+    };
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageIngestor.class);
+
+    private final MessageRepository messageDAO;
+    private final Durability durability;
+    private final Listener listener;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long enqueueTimeoutMillis;
+    private final BlockingQueue<PendingMessage> queue;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * IDs reserved for ENQUEUE mode and not yet handed out, guarded by this.
+     */
+    private int[] reservedIDs = new int[0];
+    private int nextReservedID;
+
+    /**
+     * Creates the ingestor without a Listener and starts its worker thread.
+     * @see #MessageIngestor(MessageRepository, Durability, int, int, long, long, Listener)
+     */
+    public MessageIngestor(MessageRepository messageDAO, Durability durability, int queueCapacity, int batchSize,
+            long maxDelayMillis, long enqueueTimeoutMillis)
+    {
+        this(messageDAO, durability, queueCapacity, batchSize, maxDelayMillis, enqueueTimeoutMillis, NO_LISTENER);
+    }
+
+    /**
+     * Creates the ingestor and starts its worker thread.
+     * @param messageDAO The MessageDAO or other MessageRepository that reserves IDs and inserts batches
+     * @param durability When submitted messages are acknowledged
+     * @param queueCapacity The maximum number of messages waiting to be inserted
+     * @param batchSize The maximum number of messages per batch
+     * @param maxDelayMillis How long the worker waits for a batch to fill before inserting it
+     * @param enqueueTimeoutMillis How long submit() waits for queue space before rejecting a message
+     * @param listener Told when messages are acknowledged and when acknowledged messages are lost
+     */
+    public MessageIngestor(MessageRepository messageDAO, Durability durability, int queueCapacity, int batchSize,
+            long maxDelayMillis, long enqueueTimeoutMillis, Listener listener)
+    {
+        this.messageDAO = messageDAO;
+        this.durability = durability;
+        this.listener = listener;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.enqueueTimeoutMillis = Math.max(0, enqueueTimeoutMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        worker = new Thread(this::run, "message-ingestor");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues a message for insertion. Any message_id on the message is ignored.
+     * @param message The validated message to add
+     * @return A future that completes with the added message, with null if the database rejected it, or
+     *  exceptionally if the database failed
+     * @throws RejectedExecutionException If the queue stayed full for enqueueTimeoutMillis or the ingestor is closed
+     */
+    public CompletableFuture<Message> submit(Message message)
+    {
+        if (closed)
+        {
+            throw new RejectedExecutionException("Message ingestor is closed");
+        }
+
+        int message_id = 0;
+        if (durability == Durability.ENQUEUE)
+        {
+            message_id = nextReservedID();
+            if (message_id == 0)
+            {
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+        PendingMessage pending = new PendingMessage(new Message(message_id, message.getPosted_by(),
+                message.getMessage_text(), message.getTime_posted_epoch()));
+        if (durability == Durability.ENQUEUE)
+        {
+            // Acknowledged before it is queued, so the worker cannot report it lost first.
+            listener.acknowledged(pending.message);
+        }
+
+        try
+        {
+            if (!queue.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                reject(pending);
+                throw new RejectedExecutionException("Message ingest queue is full");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            reject(pending);
+            throw new RejectedExecutionException("Interrupted while waiting for ingest queue space", e);
+        }
+
+        return durability == Durability.ENQUEUE ? CompletableFuture.completedFuture(pending.message) : pending.future;
+    }
+
+    /**
+     * Reports a message the queue did not accept as lost if it was already acknowledged.
+     */
+    private void reject(PendingMessage pending)
+    {
+        if (durability == Durability.ENQUEUE)
+        {
+            listener.lost(pending.message);
+        }
+    }
+
+    /**
+     * @return The number of messages waiting to be inserted
+     */
+    public int getQueuedMessages()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting messages, inserts everything already queued and stops the worker thread.
+     */
+    public void close()
+    {
+        closed = true;
+        try
+        {
+            worker.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        // A submit() that passed the closed check just before close() may have queued after the worker exited.
+        List<PendingMessage> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty())
+        {
+            flush(remaining);
+        }
+    }
+
+    /**
+     * Hands out the next ID reserved for ENQUEUE mode, reserving another block of batchSize IDs when the current one
+     * runs out.
+     * @return The ID, or 0 if no ID could be reserved
+     */
+    private synchronized int nextReservedID()
+    {
+        if (nextReservedID == reservedIDs.length)
+        {
+            int[] ids = messageDAO.reserveMessageIDs(batchSize);
+            if (ids.length == 0)
+            {
+                return 0;
+            }
+            reservedIDs = ids;
+            nextReservedID = 0;
+        }
+        return reservedIDs[nextReservedID++];
+    }
+
+    /**
+     * The worker loop. Blocks for the first message of a batch, then collects more until the batch is full or
+     * maxDelayMillis has passed, and inserts it. Exits once the ingestor is closed and the queue is empty.
+     */
+    private void run()
+    {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty())
+        {
+            try
+            {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize)
+                {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                    {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null)
+                    {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                closed = true;
+            }
+
+            if (!batch.isEmpty())
+            {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Inserts one batch and completes its futures. Messages without a reserved ID get one first. If the batch fails,
+     * each message is retried on its own so one bad row does not fail the others.
+     */
+    private void flush(List<PendingMessage> batch)
+    {
+        try
+        {
+            if (!assignIDs(batch))
+            {
+                fail(batch, null);
+                return;
+            }
+
+            List<Message> messages = new ArrayList<>(batch.size());
+            for (PendingMessage pending : batch)
+            {
+                messages.add(pending.message);
+            }
+
+            if (messageDAO.addMessages(messages))
+            {
+                for (PendingMessage pending : batch)
+                {
+                    complete(pending);
+                }
+                return;
+            }
+
+            for (PendingMessage pending : batch)
+            {
+                if (messageDAO.addMessages(Collections.singletonList(pending.message)))
+                {
+                    complete(pending);
+                }
+                else
+                {
+                    fail(Collections.singletonList(pending), null);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Message ingest batch failed", e);
+            fail(batch, e);
+        }
+    }
+
+    /**
+     * Reserves IDs for the messages in the batch that do not have one yet.
+     * @return False if the IDs could not be reserved
+     */
+    private boolean assignIDs(List<PendingMessage> batch)
+    {
+        int missing = 0;
+        for (PendingMessage pending : batch)
+        {
+            if (pending.message.getMessage_id() == 0)
+            {
+                missing++;
+            }
+        }
+        if (missing == 0)
+        {
+            return true;
+        }
+
+        int[] ids = messageDAO.reserveMessageIDs(missing);
+        if (ids.length == 0)
+        {
+            return false;
+        }
+
+        int next = 0;
+        for (PendingMessage pending : batch)
+        {
+            if (pending.message.getMessage_id() == 0)
+            {
+                pending.message.setMessage_id(ids[next++]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the future of an inserted message. In COMMIT mode the Listener is told first.
+     */
+    private void complete(PendingMessage pending)
+    {
+        if (durability == Durability.COMMIT)
+        {
+            listener.acknowledged(pending.message);
+        }
+        pending.future.complete(pending.message);
+    }
+
+    /**
+     * Completes the futures of messages that could not be inserted, with null if the database rejected them or
+     * exceptionally with the failure. In ENQUEUE mode the callers have already been answered, so the lost messages
+     * are logged and reported to the Listener instead.
+     * @param failure The database failure, or null if the messages were rejected
+     */
+    private void fail(List<PendingMessage> failed, RuntimeException failure)
+    {
+        for (PendingMessage pending : failed)
+        {
+            if (durability == Durability.ENQUEUE)
+            {
+                logger.error("Lost acknowledged message " + pending.message.getMessage_id() + " posted by "
+                        + pending.message.getPosted_by());
+                listener.lost(pending.message);
+            }
+            if (failure == null)
+            {
+                pending.future.complete(null);
+            }
+            else
+            {
+                pending.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * A queued message and the future its caller waits on in COMMIT mode.
+     */
+    private static class PendingMessage
+    {
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        private PendingMessage(Message message)
+        {
+            this.message = message;
+        }
+    }
+}
@@ -1,47 +1,248 @@
 package Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import DAO.AccountDAO;
-import DAO.MessageDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.AccountRepository;
+import DAO.DataAccessException;
+import DAO.MessageHandler;
+import DAO.MessageRepository;
+import DAO.StorageEngine;
+import Model.BulkMessageResult;
 import Model.Message;
+import Model.MessagePage;
+import Util.Config;
+import Util.DatabaseExecutor;
+import Util.JsonUtil;
+import Util.LruCache;
+import Util.Metrics;
+import Util.SortedIntMultimap;
+import Util.VersionTable;
 
 public class MessageService
 {
-    private MessageDAO messageDAO;
-    private AccountDAO accountDAO;
+    private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
+
+    private MessageRepository messageDAO;
+    private AccountRepository accountDAO;
+    /**
+     * Read-through cache of messages by ID. Every write in this class updates or invalidates the affected entry.
+     * IDs with no message are cached as null until a message is added with that ID or the entry expires.
+     */
+    private LruCache<Integer, Message> messageCache;
+    /**
+     * Batches new messages into multi-row inserts when socialmedia.messages.ingest.enabled is true, otherwise null.
+     */
+    private MessageIngestor ingestor;
+    /**
+     * The IDs of each account's messages, keyed by posted_by, when socialmedia.messages.accountIndex.enabled is true
+     * (the default) and the repository does not index messages by account itself, otherwise null. The first account
+     * message read starts a background thread that fills it from the repository, and every add and delete in this
+     * class keeps it up to date, so account message reads only fetch messages by primary key. Until the fill has
+     * succeeded those reads go to the MessageDAO instead; a failed fill is logged and retried by the next read after
+     * messages.accountIndex.retryMillis. Messages added or deleted
+     * without going through this class after the index is filled are not reflected in it; IDs whose message no
+     * longer exists are skipped when the messages are fetched.
+     */
+    private final SortedIntMultimap accountIndex;
+    private volatile boolean accountIndexLoaded;
+    private final AtomicBoolean accountIndexFilling = new AtomicBoolean();
+    private final long accountIndexRetryMillis;
+    private volatile long accountIndexFailedAt;
+    /**
+     * Messages deleted while a fill is running, guarded by accountIndex, or null when no fill is running. The fill
+     * may have read a message before it was deleted, so these are removed from the index again once it finishes.
+     */
+    private List<Message> deletedDuringFill;
+    /**
+     * Versions of each message and of each account's message list, bumped by every write in this class, for the
+     * ETags the controller sends with message reads. Writes that bypass this class are not seen, like the cache.
+     * The tag prefix is random per instance, so tags from before a restart never match.
+     */
+    private final VersionTable messageVersions;
+    private final VersionTable accountVersions;
+    private final String etagPrefix = "\"" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + "-";
+    /**
+     * The UTF-8 JSON the controller sends for single messages and for full account message lists, so a hit is
+     * written straight to the response without touching Jackson. Each entry carries the version it was read at and
+     * is only served while that is still the current version, so a read that raced a write can never cache stale
+     * JSON over the write's invalidation. A missing message is cached as an empty array.
+     */
+    private final LruCache<Integer, SerializedJson> messageJson;
+    private final LruCache<Integer, SerializedJson> accountMessagesJson;
+    /**
+     * Account message lists whose JSON is larger than this many bytes are not cached.
+     */
+    private final int maxAccountMessagesJsonBytes;
 
+    /**
+     * Creates a MessageService on the configured StorageEngine with its own account repository. On the MEMORY engine
+     * that repository is not shared with any AccountService, so use the other constructor to share one.
+     */
     public MessageService()
     {
-        messageDAO = new MessageDAO();
-        accountDAO = new AccountDAO();
+        this(StorageEngine.configured());
     }
 
-    public MessageService(MessageDAO messageDAO, AccountDAO accountDAO)
+    private MessageService(StorageEngine engine)
+    {
+        this(engine.createMessageRepository(), engine.createAccountRepository());
+    }
+
+    /**
+     * @param messageDAO The repository messages are stored in, a MessageDAO on the H2 engine
+     * @param accountDAO The repository used to check that posting accounts exist, an AccountDAO on the H2 engine
+     */
+    public MessageService(MessageRepository messageDAO, AccountRepository accountDAO)
     {
         this.messageDAO = messageDAO;
         this.accountDAO = accountDAO;
+        this.messageCache = new LruCache<>(Config.getInt("messages.cache.maxSize", 10000),
+                Config.getLong("messages.cache.ttlMillis", 60000));
+        Metrics.registerCache("messages", messageCache);
+        if (Config.getBoolean("messages.ingest.enabled", false))
+        {
+            this.ingestor = new MessageIngestor(messageDAO,
+                    Config.getEnum("messages.ingest.durability", MessageIngestor.Durability.class, MessageIngestor.Durability.COMMIT),
+                    Config.getInt("messages.ingest.queueCapacity", 10000),
+                    Config.getInt("messages.ingest.batchSize", 100),
+                    Config.getLong("messages.ingest.maxDelayMillis", 0),
+                    Config.getLong("messages.ingest.enqueueTimeoutMillis", 1000),
+                    new IngestListener());
+            Metrics.registerGauge("socialmedia_ingest_queued_messages", "Messages waiting in the MessageIngestor queue.",
+                    ingestor::getQueuedMessages);
+        }
+        this.accountIndex = Config.getBoolean("messages.accountIndex.enabled", true) && !messageDAO.indexesMessagesByAccount()
+                ? new SortedIntMultimap() : null;
+        this.accountIndexRetryMillis = Math.max(0, Config.getLong("messages.accountIndex.retryMillis", 5000));
+        this.messageVersions = new VersionTable(Config.getInt("messages.etag.stripes", 16384));
+        this.accountVersions = new VersionTable(Config.getInt("messages.etag.stripes", 16384));
+        this.messageJson = new LruCache<>(Config.getInt("messages.jsonCache.maxSize", 10000),
+                Config.getLong("messages.jsonCache.ttlMillis", 60000));
+        this.accountMessagesJson = new LruCache<>(Config.getInt("messages.accountJsonCache.maxSize", 1000),
+                Config.getLong("messages.jsonCache.ttlMillis", 60000));
+        this.maxAccountMessagesJsonBytes = Config.getInt("messages.accountJsonCache.maxEntryBytes", 262144);
+        Metrics.registerCache("message_json", messageJson);
+        Metrics.registerCache("account_messages_json", accountMessagesJson);
     }
 
     /**
      * Uses the MessageDAO to add a new message if the message meets these requirements:
      *  * The message text is not blank
      *  * The message is shorter than 255 characters
-     *  * The account posting the message exists
+     *  * The account posting the message exists, which the AccountDAO usually answers without a query
+     * If ingest is enabled the message is inserted by the MessageIngestor as part of a batch, and this method waits
+     * until the ingestor acknowledges it. The ingestor then caches the message through its Listener.
      * @param message The message to add
      * @return The added message or null if adding failed
+     * @throws java.util.concurrent.RejectedExecutionException If ingest is enabled and its queue is full
+     * @throws DataAccessException If the database failed
      */
     public Message addMessage(Message message)
     {
         Message added = null;
-        if (messageTextIsValid(message.getMessage_text()) && accountDAO.getAccountByID(message.getPosted_by()) != null)
+        if (canAdd(message))
         {
+            if (ingestor != null)
+            {
+                return awaitIngest(message);
+            }
             added = messageDAO.addMessage(message);
+            if (added != null)
+            {
+                cacheAddedMessage(added);
+            }
         }
 
         return added;
     }
 
+    /**
+     * Uses the MessageDAO to add one chunk of a bulk import. Each message must meet the same requirements as
+     * addMessage. The valid messages are inserted as one JDBC batch in a single transaction. If that transaction
+     * fails, each valid message is retried on its own so one bad row does not fail the rest of the chunk.
+     * Imported messages are not added to the message cache, but any cached entry for their IDs is invalidated.
+     * @param messages The messages to add, in the order they appeared in the import
+     * @param firstIndex The position of the first message in the import, used to number the results
+     * @return One result per message, in the same order
+     */
+    public List<BulkMessageResult> addMessages(List<Message> messages, int firstIndex)
+    {
+        BulkMessageResult[] results = new BulkMessageResult[messages.size()];
+        List<Message> valid = new ArrayList<>(messages.size());
+        List<Integer> validPositions = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++)
+        {
+            Message message = messages.get(i);
+            if (!messageTextIsValid(message.getMessage_text()))
+            {
+                results[i] = BulkMessageResult.rejected(firstIndex + i, "message_text must not be blank and must be under 255 characters");
+            }
+            else if (!accountDAO.accountExists(message.getPosted_by()))
+            {
+                results[i] = BulkMessageResult.rejected(firstIndex + i, "posted_by is not an existing account");
+            }
+            else
+            {
+                valid.add(message);
+                validPositions.add(i);
+            }
+        }
+
+        if (!valid.isEmpty())
+        {
+            insertChunk(valid, validPositions, firstIndex, results);
+        }
+
+        List<BulkMessageResult> resultList = new ArrayList<>(results.length);
+        Collections.addAll(resultList, results);
+        return resultList;
+    }
+
+    /**
+     * Reserves IDs for the valid messages of a chunk, inserts them and fills in their results.
+     */
+    private void insertChunk(List<Message> valid, List<Integer> positions, int firstIndex, BulkMessageResult[] results)
+    {
+        int[] ids = messageDAO.reserveMessageIDs(valid.size());
+        List<Message> withIDs = new ArrayList<>(valid.size());
+        for (int i = 0; i < valid.size(); i++)
+        {
+            Message message = valid.get(i);
+            int message_id = ids.length == 0 ? 0 : ids[i];
+            withIDs.add(new Message(message_id, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch()));
+        }
+
+        boolean chunkAdded = ids.length > 0 && messageDAO.addMessages(withIDs);
+        for (int i = 0; i < withIDs.size(); i++)
+        {
+            Message message = withIDs.get(i);
+            int position = positions.get(i);
+            if (chunkAdded || (ids.length > 0 && messageDAO.addMessages(Collections.singletonList(message))))
+            {
+                messageCache.invalidate(message.getMessage_id());
+                indexMessage(message);
+                bumpVersions(message.getMessage_id(), message);
+                results[position] = BulkMessageResult.imported(firstIndex + position, message.getMessage_id());
+            }
+            else
+            {
+                results[position] = BulkMessageResult.rejected(firstIndex + position, "message could not be inserted");
+            }
+        }
+    }
+
     /**
      * Uses the MessageDAO to get a list of all messages that currently exist.
      * @return The list of currently existing Messages
@@ -52,58 +253,609 @@ public class MessageService
     }
 
     /**
-     * Uses the MessageDAO to get a message based on the message's ID.
+     * Uses the MessageDAO to stream every message that currently exists to the handler, one at a time.
+     * @param handler Called once for each message
+     * @throws IOException If the handler fails to write a message
+     */
+    public void forEachMessage(MessageHandler handler) throws IOException
+    {
+        messageDAO.forEachMessage(handler);
+    }
+
+    /**
+     * Uses the MessageDAO to get a message based on the message's ID. Messages are served from the message cache
+     * when possible and only loaded through the MessageDAO on a miss. An ID is only cached as missing when the
+     * MessageDAO answers that no such message exists; if it fails, nothing is cached and the next read tries again.
      * @param message_id The ID of the message to get
      * @return The message returned by the MessageDAO
+     * @throws DataAccessException If the message could not be read
      */
     public Message getMessageByID(int message_id)
     {
-        return messageDAO.getMessageByID(message_id);
+        return messageCache.get(message_id, messageDAO::getMessageByID);
     }
 
     /**
-     * Uses the MessageDAO to delete a message based on the message's ID.
+     * Uses the MessageDAO to delete a message based on the message's ID. The MessageDAO deletes the message and
+     * returns it in one statement, and the message cache then records that the ID no longer exists. If the MessageDAO
+     * fails, everything cached about the message is dropped instead. See forgetMessage.
      * @param message_id The ID of the message to delete
-     * @return The deleted message or null if deletion failed
+     * @return The deleted message or null if no message had the ID
+     * @throws DataAccessException If the message could not be deleted
      */
     public Message deleteMessageByID(int message_id)
     {
-        Message deleted = getMessageByID(message_id);
+        Message deleted;
+        try
+        {
+            deleted = messageDAO.deleteMessageByID(message_id);
+        }
+        catch (RuntimeException e)
+        {
+            forgetMessage(message_id);
+            throw e;
+        }
+        messageCache.put(message_id, null);
         if (deleted != null)
         {
-            messageDAO.deleteMessageByID(message_id);
+            unindexMessage(deleted);
         }
-        
+        bumpVersions(message_id, deleted);
+
         return deleted;
     }
 
     /**
      * Uses the MessageDAO to update a message with new text based on the message's ID.
      * Updated text must meet the same requirements as newly inserted message text.
+     * The MessageDAO updates the message and returns it in one statement, which also tells whether it existed,
+     * and the message cache is then updated with the result. If the MessageDAO fails, everything cached about the
+     * message is dropped instead. See forgetMessage.
      * @param message_id The ID of the message to update
      * @param message The message with updated text to use
-     * @return The updated message or null if updating failed
+     * @return The updated message or null if the text is invalid or no message had the ID
+     * @throws DataAccessException If the message could not be updated
      */
     public Message updateMessageByID(int message_id, Message message)
     {
         Message updated = null;
-        if (messageTextIsValid(message.getMessage_text()) && getMessageByID(message_id) != null)
+        if (messageTextIsValid(message.getMessage_text()))
         {
-            messageDAO.updateMessageByID(message_id, message.getMessage_text());
-            updated = getMessageByID(message_id);
+            try
+            {
+                updated = messageDAO.updateMessageByID(message_id, message.getMessage_text());
+            }
+            catch (RuntimeException e)
+            {
+                forgetMessage(message_id);
+                throw e;
+            }
+            messageCache.put(message_id, updated);
+            bumpVersions(message_id, updated);
         }
 
         return updated;
     }
 
     /**
-     * Uses the MessageDAO to get a list of all messages posted by a single account based on the account's ID.
+     * Uses the MessageDAO to get a list of all messages posted by a single account based on the account's ID. Once
+     * the account index is filled the account's message IDs are read from memory and only those messages are
+     * fetched; an account with no messages is answered without asking the MessageDAO at all.
      * @param account_id The id of the account that posted the messages to get
      * @return The list of messages posted by the account with the given ID.
      */
     public List<Message> getMessagesByAccountID(int account_id)
     {
-        return messageDAO.getMessagesByAccountID(account_id);
+        if (!accountIndexReady())
+        {
+            return messageDAO.getMessagesByAccountID(account_id);
+        }
+
+        int[] message_ids = accountIndex.get(account_id);
+        return message_ids.length == 0 ? new ArrayList<>() : messageDAO.getMessagesByIDs(message_ids);
+    }
+
+    /**
+     * @param message_id The ID of the message
+     * @return The message's JSON from the JSON cache, an empty array if it is cached as missing, or null if the
+     *  current version is not cached
+     */
+    public byte[] getCachedMessageJson(int message_id)
+    {
+        return cachedJson(messageJson, message_id, messageVersions.get(message_id));
+    }
+
+    /**
+     * Gets a message as the JSON GET /messages/{message_id} sends, serializing and caching it on a miss.
+     * @param message_id The ID of the message
+     * @return The message's UTF-8 JSON, or an empty array if no message has the ID
+     * @throws DataAccessException If the message could not be read, in which case nothing is cached
+     */
+    public byte[] getMessageJson(int message_id)
+    {
+        long version = messageVersions.get(message_id);
+        byte[] json = cachedJson(messageJson, message_id, version);
+        if (json == null)
+        {
+            Message message = getMessageByID(message_id);
+            json = message == null ? new byte[0] : toJson(message);
+            messageJson.put(message_id, new SerializedJson(version, json));
+        }
+        return json;
+    }
+
+    /**
+     * @param account_id The ID of the account
+     * @return The JSON array of the account's messages from the JSON cache, or null if the current version is not
+     *  cached
+     */
+    public byte[] getCachedAccountMessagesJson(int account_id)
+    {
+        return cachedJson(accountMessagesJson, account_id, accountVersions.get(account_id));
+    }
+
+    /**
+     * Gets the messages posted by an account as the JSON array GET /accounts/{account_id}/messages sends,
+     * serializing them on a miss and caching the result unless it is larger than maxAccountMessagesJsonBytes.
+     * @param account_id The ID of the account
+     * @return The UTF-8 JSON array of the account's messages
+     */
+    public byte[] getAccountMessagesJson(int account_id)
+    {
+        long version = accountVersions.get(account_id);
+        byte[] json = cachedJson(accountMessagesJson, account_id, version);
+        if (json == null)
+        {
+            json = toJson(getMessagesByAccountID(account_id));
+            if (json.length <= maxAccountMessagesJsonBytes)
+            {
+                accountMessagesJson.put(account_id, new SerializedJson(version, json));
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Uses the MessageDAO to get one page of all messages, in ascending message_id order.
+     * @param after The cursor from the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of messages on the page
+     * @return The page of messages and the cursor for the next page
+     */
+    public MessagePage getMessagesPage(int after, int limit)
+    {
+        return toPage(messageDAO.getMessagesAfter(after, limit + 1), limit);
+    }
+
+    /**
+     * Uses the MessageDAO to get one page of the messages posted by a single account, in ascending message_id order.
+     * @param account_id The id of the account that posted the messages to get
+     * @param after The cursor from the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of messages on the page
+     * @return The page of messages and the cursor for the next page
+     */
+    public MessagePage getMessagesPageByAccountID(int account_id, int after, int limit)
+    {
+        if (!accountIndexReady())
+        {
+            return toPage(messageDAO.getMessagesByAccountIDAfter(account_id, after, limit + 1), limit);
+        }
+
+        // The cursor comes from the index rather than the fetched messages, so a skipped ID cannot end paging early.
+        int[] message_ids = accountIndex.getAfter(account_id, after, limit + 1);
+        boolean more = message_ids.length > limit;
+        if (more)
+        {
+            message_ids = Arrays.copyOf(message_ids, limit);
+        }
+        List<Message> messages = message_ids.length == 0 ? new ArrayList<>() : messageDAO.getMessagesByIDs(message_ids);
+        return new MessagePage(messages, more ? message_ids[limit - 1] : null);
+    }
+
+    /**
+     * Runs addMessage on the DatabaseExecutor. If ingest is enabled, the message is validated on the executor and
+     * then handed to the MessageIngestor, and the returned future completes when the ingestor acknowledges it
+     * without holding an executor thread while the batch is inserted.
+     * @param message The message to add
+     * @return A future that completes with the added message or null if adding failed
+     */
+    public CompletableFuture<Message> addMessageAsync(Message message)
+    {
+        if (ingestor == null)
+        {
+            return DatabaseExecutor.supply(() -> addMessage(message));
+        }
+
+        return DatabaseExecutor.supply(() -> canAdd(message))
+                .thenCompose(valid -> valid ? ingestor.submit(message) : CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Runs getAllMessages on the DatabaseExecutor.
+     * @return A future that completes with the list of currently existing Messages
+     */
+    public CompletableFuture<List<Message>> getAllMessagesAsync()
+    {
+        return DatabaseExecutor.supply(this::getAllMessages);
+    }
+
+    /**
+     * Runs forEachMessage on the DatabaseExecutor, so the handler is called on an executor thread.
+     * @param handler Called once for each message
+     * @return A future that completes once every message has been handled, or fails with an UncheckedIOException
+     *  if the handler fails
+     */
+    public CompletableFuture<Void> forEachMessageAsync(MessageHandler handler)
+    {
+        return DatabaseExecutor.supply(() -> {
+            try
+            {
+                forEachMessage(handler);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs getMessageByID on the DatabaseExecutor.
+     * @param message_id The ID of the message to get
+     * @return A future that completes with the message or null if none exists
+     */
+    public CompletableFuture<Message> getMessageByIDAsync(int message_id)
+    {
+        return DatabaseExecutor.supply(() -> getMessageByID(message_id));
+    }
+
+    /**
+     * Runs getMessageJson on the DatabaseExecutor. Check getCachedMessageJson first to skip the executor on a hit.
+     * @param message_id The ID of the message
+     * @return A future that completes with the message's JSON, or an empty array if no message has the ID
+     */
+    public CompletableFuture<byte[]> getMessageJsonAsync(int message_id)
+    {
+        return DatabaseExecutor.supply(() -> getMessageJson(message_id));
+    }
+
+    /**
+     * Runs getAccountMessagesJson on the DatabaseExecutor. Check getCachedAccountMessagesJson first to skip the
+     * executor on a hit.
+     * @param account_id The ID of the account
+     * @return A future that completes with the JSON array of the account's messages
+     */
+    public CompletableFuture<byte[]> getAccountMessagesJsonAsync(int account_id)
+    {
+        return DatabaseExecutor.supply(() -> getAccountMessagesJson(account_id));
+    }
+
+    /**
+     * Runs deleteMessageByID on the DatabaseExecutor.
+     * @param message_id The ID of the message to delete
+     * @return A future that completes with the deleted message or null if deletion failed
+     */
+    public CompletableFuture<Message> deleteMessageByIDAsync(int message_id)
+    {
+        return DatabaseExecutor.supply(() -> deleteMessageByID(message_id));
+    }
+
+    /**
+     * Runs updateMessageByID on the DatabaseExecutor.
+     * @param message_id The ID of the message to update
+     * @param message The message with updated text to use
+     * @return A future that completes with the updated message or null if updating failed
+     */
+    public CompletableFuture<Message> updateMessageByIDAsync(int message_id, Message message)
+    {
+        return DatabaseExecutor.supply(() -> updateMessageByID(message_id, message));
+    }
+
+    /**
+     * Runs getMessagesByAccountID on the DatabaseExecutor.
+     * @param account_id The id of the account that posted the messages to get
+     * @return A future that completes with the list of messages posted by the account
+     */
+    public CompletableFuture<List<Message>> getMessagesByAccountIDAsync(int account_id)
+    {
+        return DatabaseExecutor.supply(() -> getMessagesByAccountID(account_id));
+    }
+
+    /**
+     * Runs getMessagesPage on the DatabaseExecutor.
+     * @param after The cursor from the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of messages on the page
+     * @return A future that completes with the page of messages and the cursor for the next page
+     */
+    public CompletableFuture<MessagePage> getMessagesPageAsync(int after, int limit)
+    {
+        return DatabaseExecutor.supply(() -> getMessagesPage(after, limit));
+    }
+
+    /**
+     * Runs getMessagesPageByAccountID on the DatabaseExecutor.
+     * @param account_id The id of the account that posted the messages to get
+     * @param after The cursor from the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of messages on the page
+     * @return A future that completes with the page of messages and the cursor for the next page
+     */
+    public CompletableFuture<MessagePage> getMessagesPageByAccountIDAsync(int account_id, int after, int limit)
+    {
+        return DatabaseExecutor.supply(() -> getMessagesPageByAccountID(account_id, after, limit));
+    }
+
+    /**
+     * Builds a page from a query that asked for one more row than the page holds. The extra row only signals that
+     * another page exists and is dropped.
+     * @param messages Up to limit + 1 messages in ascending message_id order
+     * @param limit The maximum number of messages on the page
+     * @return The page, with a next cursor only if the extra row was found
+     */
+    private MessagePage toPage(List<Message> messages, int limit)
+    {
+        if (messages.size() <= limit)
+        {
+            return new MessagePage(messages, null);
+        }
+
+        List<Message> page = messages.subList(0, limit);
+        return new MessagePage(page, page.get(limit - 1).getMessage_id());
+    }
+
+    /**
+     * @param message_id The ID of a message
+     * @return A strong ETag for the message as GET /messages/{message_id} returns it, which changes whenever the
+     *  message is added, updated or deleted through this service
+     */
+    public String getMessageETag(int message_id)
+    {
+        return etagPrefix + messageVersions.get(message_id) + "\"";
+    }
+
+    /**
+     * @param account_id The ID of an account
+     * @return A strong ETag for the account's messages as GET /accounts/{account_id}/messages returns them, which
+     *  changes whenever one of them is added, updated or deleted through this service
+     */
+    public String getAccountMessagesETag(int account_id)
+    {
+        return etagPrefix + accountVersions.get(account_id) + "\"";
+    }
+
+    /**
+     * @return The message cache, for reporting its hit rate, evictions and load latency
+     */
+    public LruCache<Integer, Message> getMessageCache()
+    {
+        return messageCache;
+    }
+
+    /**
+     * Stops the MessageIngestor, if ingest is enabled, after inserting every message still queued, then closes the
+     * message repository.
+     */
+    public void close()
+    {
+        if (ingestor != null)
+        {
+            ingestor.close();
+        }
+        messageDAO.close();
+    }
+
+    /**
+     * Caches a new message, adds it to the account index and bumps the versions it changes.
+     */
+    private void cacheAddedMessage(Message added)
+    {
+        messageCache.put(added.getMessage_id(), added);
+        indexMessage(added);
+        bumpVersions(added.getMessage_id(), added);
+    }
+
+    /**
+     * Adds a new message's ID to the account index, if it is enabled. This is done even while the index is being
+     * filled, since adding an ID the fill also reads is harmless.
+     */
+    private void indexMessage(Message message)
+    {
+        if (accountIndex != null)
+        {
+            accountIndex.add(message.getPosted_by(), message.getMessage_id());
+        }
+    }
+
+    /**
+     * Removes a deleted message's ID from the account index, if it is enabled, and records the message if a fill is
+     * running so the fill cannot add it back.
+     */
+    private void unindexMessage(Message message)
+    {
+        if (accountIndex != null)
+        {
+            synchronized (accountIndex)
+            {
+                accountIndex.remove(message.getPosted_by(), message.getMessage_id());
+                if (deletedDuringFill != null)
+                {
+                    deletedDuringFill.add(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bumps the version of a written message and, if it exists, of its account's message list, and drops their
+     * cached JSON. Called after the message cache and account index are updated, so a reader who sees the new
+     * version reads the new data.
+     * @param message_id The ID of the message that was written
+     * @param message The message as written, or null if no message was changed
+     */
+    private void bumpVersions(int message_id, Message message)
+    {
+        messageVersions.bump(message_id);
+        messageJson.invalidate(message_id);
+        if (message != null)
+        {
+            accountVersions.bump(message.getPosted_by());
+            accountMessagesJson.invalidate(message.getPosted_by());
+        }
+    }
+
+    /**
+     * Drops everything cached about a message after a write to it failed. The write may still have reached the
+     * database, so neither the cached message nor the write's intended result can be trusted, and the next read
+     * loads the message again. The message's account list is dropped too if the message was cached.
+     * @param message_id The ID of the message whose write failed
+     */
+    private void forgetMessage(int message_id)
+    {
+        forgetMessage(message_id, messageCache.getIfPresent(message_id, null));
+    }
+
+    /**
+     * Drops everything cached about a message, including its account list if the message is given.
+     * @param message_id The ID of the message to forget
+     * @param message The message, or null if it is not known
+     */
+    private void forgetMessage(int message_id, Message message)
+    {
+        messageCache.invalidate(message_id);
+        bumpVersions(message_id, message);
+    }
+
+    /**
+     * @return The cached JSON for the key if it was read at the given version, otherwise null
+     */
+    private static byte[] cachedJson(LruCache<Integer, SerializedJson> cache, int key, long version)
+    {
+        SerializedJson cached = cache.getIfPresent(key, null);
+        return cached != null && cached.version == version ? cached.json : null;
+    }
+
+    private static byte[] toJson(Message message)
+    {
+        try
+        {
+            return JsonUtil.MESSAGE_WRITER.writeValueAsBytes(message);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] toJson(List<Message> messages)
+    {
+        try
+        {
+            return JsonUtil.MESSAGE_LIST_WRITER.writeValueAsBytes(messages);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return True if the account index is enabled and filled. If it is enabled but not filled, and no fill is
+     *  running or has failed within the last accountIndexRetryMillis, a fill is started in the background.
+     */
+    private boolean accountIndexReady()
+    {
+        if (accountIndex == null)
+        {
+            return false;
+        }
+        if (!accountIndexLoaded && System.currentTimeMillis() - accountIndexFailedAt >= accountIndexRetryMillis)
+        {
+            fillAccountIndexInBackground();
+        }
+        return accountIndexLoaded;
+    }
+
+    /**
+     * Starts a thread that fills the account index from the MessageDAO, unless one is already running. The fill is
+     * a full scan of the messages, so it runs off the request threads and without blocking adds and deletes, which
+     * keep updating the index while it runs.
+     */
+    private void fillAccountIndexInBackground()
+    {
+        if (accountIndexFilling.compareAndSet(false, true))
+        {
+            Thread filler = new Thread(this::fillAccountIndex, "account-index-fill");
+            filler.setDaemon(true);
+            filler.start();
+        }
+    }
+
+    /**
+     * Adds every message in the MessageDAO to the account index, then removes again any message deleted while the
+     * scan ran. The index is only marked filled if the scan succeeded; otherwise the failure is logged and reads
+     * keep going to the MessageDAO until a later fill succeeds.
+     */
+    private void fillAccountIndex()
+    {
+        synchronized (accountIndex)
+        {
+            deletedDuringFill = new ArrayList<>();
+        }
+        boolean filled = false;
+        try
+        {
+            messageDAO.forEachMessage(message -> accountIndex.add(message.getPosted_by(), message.getMessage_id()));
+            filled = true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            accountIndexFailedAt = System.currentTimeMillis();
+            logger.error("Failed to fill the account index, account messages are read from the database until a retry"
+                    + " succeeds", e);
+        }
+        finally
+        {
+            synchronized (accountIndex)
+            {
+                for (Message deleted : deletedDuringFill)
+                {
+                    accountIndex.remove(deleted.getPosted_by(), deleted.getMessage_id());
+                }
+                deletedDuringFill = null;
+                accountIndexLoaded = filled;
+            }
+            accountIndexFilling.set(false);
+        }
+    }
+
+    /**
+     * Submits a validated message to the MessageIngestor and waits for it to be acknowledged.
+     * @return The added message or null if the database rejected it
+     * @throws DataAccessException If the database failed
+     */
+    private Message awaitIngest(Message message)
+    {
+        try
+        {
+            return ingestor.submit(message).join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the requirements addMessage places on a new message: valid text and an existing account.
+     * @param message The message to check
+     * @return True if the message may be added
+     */
+    private boolean canAdd(Message message)
+    {
+        return messageTextIsValid(message.getMessage_text()) && accountDAO.accountExists(message.getPosted_by());
     }
 
     /**
@@ -113,6 +865,41 @@ public class MessageService
      */
     private boolean messageTextIsValid(String message_text)
     {
-        return !message_text.isBlank() && message_text.length() < 255;
+        return message_text != null && !message_text.isBlank() && message_text.length() < 255;
+    }
+
+    /**
+     * Caches messages the MessageIngestor acknowledges, and forgets acknowledged messages it loses in ENQUEUE mode
+     * so a message that was never inserted is not served from the cache, the account index or an ETag.
+     */
+    private class IngestListener implements MessageIngestor.Listener
+    {
+        @Override
+        public void acknowledged(Message message)
+        {
+            cacheAddedMessage(message);
+        }
+
+        @Override
+        public void lost(Message message)
+        {
+            unindexMessage(message);
+            forgetMessage(message.getMessage_id(), message);
+        }
+    }
+
+    /**
+     * Serialized JSON and the version of the message or account list it was read at.
+     */
+    private static class SerializedJson
+    {
+        private final long version;
+        private final byte[] json;
+
+        private SerializedJson(long version, byte[] json)
+        {
+            this.version = version;
+            this.json = json;
+        }
     }
 }
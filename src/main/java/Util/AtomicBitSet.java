@@ -0,0 +1,104 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe, growable set of non-negative ints stored as one bit each. Bits can be set but never cleared,
+ * which lets set() and get() run without locks: growing copies the words into a larger array under a lock, and a
+ * set() that raced with a copy simply sets its bit again in the new array.
+ */
+public class AtomicBitSet
+{
+    private volatile AtomicLongArray words;
+
+    /**
+     * @param initialCapacity The number of bits to allocate up front
+     */
+    public AtomicBitSet(int initialCapacity)
+    {
+        words = new AtomicLongArray(Math.max(1, (initialCapacity + 63) >>> 6));
+    }
+
+    /**
+     * @param index The bit to test
+     * @return True if the bit has been set
+     */
+    public boolean get(int index)
+    {
+        if (index < 0)
+        {
+            return false;
+        }
+        AtomicLongArray current = words;
+        int word = index >>> 6;
+        return word < current.length() && (current.get(word) & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets a bit, growing the set if needed.
+     * @param index The bit to set, which must not be negative
+     */
+    public void set(int index)
+    {
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Bit index must not be negative: " + index);
+        }
+
+        int word = index >>> 6;
+        long mask = 1L << index;
+        AtomicLongArray current = words;
+        while (true)
+        {
+            if (word >= current.length())
+            {
+                current = grow(word + 1);
+            }
+            long bits = current.get(word);
+            if ((bits & mask) == 0 && !current.compareAndSet(word, bits, bits | mask))
+            {
+                continue;
+            }
+            AtomicLongArray latest = words;
+            if (latest == current)
+            {
+                return;
+            }
+            current = latest;
+        }
+    }
+
+    /**
+     * @return The number of bits set
+     */
+    public int cardinality()
+    {
+        AtomicLongArray current = words;
+        int count = 0;
+        for (int i = 0; i < current.length(); i++)
+        {
+            count += Long.bitCount(current.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Replaces the word array with one at least minWords long, at least doubling it so growth stays amortized.
+     */
+    private synchronized AtomicLongArray grow(int minWords)
+    {
+        AtomicLongArray current = words;
+        if (current.length() >= minWords)
+        {
+            return current;
+        }
+
+        AtomicLongArray grown = new AtomicLongArray(Math.max(minWords, current.length() * 2));
+        for (int i = 0; i < current.length(); i++)
+        {
+            grown.set(i, current.get(i));
+        }
+        words = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,150 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe map from non-negative int keys to values, stored in an array indexed by the key. Nothing is boxed
+ * and there is no entry object per key: a value costs one array slot, so keys are expected to be dense, like
+ * database IDs handed out by a counter.
+ *
+ * The slots live in chunks of CHUNK_SIZE that are allocated the first time a key in their range is stored, behind a
+ * directory that covers every non-negative int and so never has to grow. Reads and writes take no locks: every
+ * write is a single compare-and-set on the key's slot, and a read sees every write that completed before it started.
+ * Iterating in key order is a walk from 0 to getHighestKey().
+ */
+public class ConcurrentIntArrayMap<V>
+{
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<V>> chunks =
+            new AtomicReferenceArray<>(1 << (31 - CHUNK_BITS));
+    private final AtomicInteger highestKey = new AtomicInteger(-1);
+
+    /**
+     * @param key The key
+     * @return The value stored under the key, or null if there is none
+     */
+    public V get(int key)
+    {
+        AtomicReferenceArray<V> chunk = chunkFor(key, false);
+        return chunk == null ? null : chunk.get(key & CHUNK_MASK);
+    }
+
+    /**
+     * Stores a value under a key, replacing any value already there.
+     * @param key The key, which must not be negative
+     * @param value The value, which must not be null
+     * @return The value previously stored under the key, or null if there was none
+     */
+    public V put(int key, V value)
+    {
+        V previous = chunkFor(key, true).getAndSet(key & CHUNK_MASK, value);
+        highestKey.accumulateAndGet(key, Math::max);
+        return previous;
+    }
+
+    /**
+     * Stores a value under a key unless the key already has one.
+     * @param key The key, which must not be negative
+     * @param value The value, which must not be null
+     * @return The value already stored under the key, or null if the value was stored
+     */
+    public V putIfAbsent(int key, V value)
+    {
+        AtomicReferenceArray<V> chunk = chunkFor(key, true);
+        int slot = key & CHUNK_MASK;
+        while (true)
+        {
+            if (chunk.compareAndSet(slot, null, value))
+            {
+                highestKey.accumulateAndGet(key, Math::max);
+                return null;
+            }
+            V current = chunk.get(slot);
+            if (current != null)
+            {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Replaces the value under a key with the result of applying the function to it, if the key has a value. The
+     * function may be called more than once if another thread writes the key at the same time, so it should have
+     * no side effects.
+     * @param key The key
+     * @param update Computes the new value from the current one; must not return null
+     * @return The new value, or null if the key had no value
+     */
+    public V computeIfPresent(int key, UnaryOperator<V> update)
+    {
+        AtomicReferenceArray<V> chunk = chunkFor(key, false);
+        if (chunk == null)
+        {
+            return null;
+        }
+
+        int slot = key & CHUNK_MASK;
+        while (true)
+        {
+            V current = chunk.get(slot);
+            if (current == null)
+            {
+                return null;
+            }
+            V updated = update.apply(current);
+            if (chunk.compareAndSet(slot, current, updated))
+            {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Removes the value under a key. The key's chunk stays allocated.
+     * @param key The key
+     * @return The removed value, or null if the key had none
+     */
+    public V remove(int key)
+    {
+        AtomicReferenceArray<V> chunk = chunkFor(key, false);
+        return chunk == null ? null : chunk.getAndSet(key & CHUNK_MASK, null);
+    }
+
+    /**
+     * @return The highest key a value has ever been stored under, even if it has since been removed, or -1 if
+     *  nothing has been stored
+     */
+    public int getHighestKey()
+    {
+        return highestKey.get();
+    }
+
+    /**
+     * @return The chunk holding the key's slot, allocating it if create is set, or null if it is not allocated
+     */
+    private AtomicReferenceArray<V> chunkFor(int key, boolean create)
+    {
+        if (key < 0)
+        {
+            if (create)
+            {
+                throw new IllegalArgumentException("key must not be negative: " + key);
+            }
+            return null;
+        }
+
+        int index = key >>> CHUNK_BITS;
+        AtomicReferenceArray<V> chunk = chunks.get(index);
+        if (chunk == null && create)
+        {
+            chunks.compareAndSet(index, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+}
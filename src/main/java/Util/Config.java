@@ -0,0 +1,134 @@
+package Util;
+
+/**
+ * Reads tunable settings from JVM system properties. Every setting is named with the "socialmedia." prefix, so the
+ * maximum pool size is set with -Dsocialmedia.pool.maxSize=20. Unset or malformed values fall back to the default.
+ */
+public class Config
+{
+    private static final String PREFIX = "socialmedia.";
+
+    private Config()
+    {
+    }
+
+    /**
+     * Reads a string setting.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param defaultValue The value to use if the setting is unset
+     * @return The configured value or the default
+     */
+    public static String getString(String name, String defaultValue)
+    {
+        return System.getProperty(PREFIX + name, defaultValue);
+    }
+
+    /**
+     * Reads an integer setting.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param defaultValue The value to use if the setting is unset or not a number
+     * @return The configured value or the default
+     */
+    public static int getInt(String name, int defaultValue)
+    {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a long setting.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param defaultValue The value to use if the setting is unset or not a number
+     * @return The configured value or the default
+     */
+    public static long getLong(String name, long defaultValue)
+    {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Long.parseLong(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a decimal setting.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param defaultValue The value to use if the setting is unset or not a number
+     * @return The configured value or the default
+     */
+    public static double getDouble(String name, double defaultValue)
+    {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+
+        try
+        {
+            return Double.parseDouble(value.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a boolean setting.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param defaultValue The value to use if the setting is unset
+     * @return The configured value or the default
+     */
+    public static boolean getBoolean(String name, boolean defaultValue)
+    {
+        String value = System.getProperty(PREFIX + name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * Reads an enum setting. The value is matched against the constant names ignoring case.
+     * @param name The name of the setting without the "socialmedia." prefix
+     * @param type The enum class
+     * @param defaultValue The value to use if the setting is unset or names no constant
+     * @return The configured value or the default
+     */
+    public static <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue)
+    {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+
+        for (E constant : type.getEnumConstants())
+        {
+            if (constant.name().equalsIgnoreCase(value.trim()))
+            {
+                return constant;
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,455 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of JDBC connections. At most maxSize connections are ever lent out at once, callers wait up to the
+ * acquire timeout for one to free up, and a background housekeeper keeps at least minSize connections open, closes
+ * connections that have sat idle for too long and logs connections that have been held past the leak threshold.
+ *
+ * Connections handed out by the pool are proxies. Calling close() on one returns the underlying physical connection
+ * to the pool instead of closing it, so callers should always close them with try-with-resources. Each physical
+ * connection also keeps a StatementCache, so prepareStatement(sql) with SQL the connection has seen before reuses
+ * the already parsed and planned statement.
+ */
+public class ConnectionPool implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final DataSource dataSource;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final LongAdder statementCacheEvictions = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool and immediately opens minSize connections.
+     * @param dataSource The source of physical connections
+     * @param minSize The number of connections to keep open even when idle
+     * @param maxSize The maximum number of connections that may be open at once
+     * @param acquireTimeoutMillis How long getConnection() waits for a free connection before failing
+     * @param idleTimeoutMillis How long a connection above minSize may sit idle before it is closed
+     * @param leakDetectionThresholdMillis How long a connection may be borrowed before it is reported as leaked,
+     *  or 0 to disable leak detection
+     * @param housekeepingPeriodMillis How often idle eviction and leak detection run
+     * @param statementCacheSize How many prepared statements each connection caches, or 0 to disable caching
+     */
+    public ConnectionPool(DataSource dataSource, int minSize, int maxSize, long acquireTimeoutMillis,
+            long idleTimeoutMillis, long leakDetectionThresholdMillis, long housekeepingPeriodMillis,
+            int statementCacheSize)
+    {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize)
+        {
+            throw new IllegalArgumentException("Pool sizes must satisfy 0 <= minSize <= maxSize and maxSize >= 1");
+        }
+
+        this.dataSource = dataSource;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingPeriodMillis, housekeepingPeriodMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, opening a new one if none are idle and the pool is below its maximum size.
+     * @return A pooled connection that returns itself to the pool when closed
+     * @throws SQLTransientConnectionException If no connection becomes available within the acquire timeout or
+     *  the wait is interrupted
+     * @throws SQLException If the pool has been shut down or a new connection cannot be opened
+     */
+    public Connection getConnection() throws SQLException
+    {
+        if (closed)
+        {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        try
+        {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis + "ms waiting for a connection ("
+                        + borrowed.size() + " of " + maxSize + " in use)");
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        try
+        {
+            PooledConnection pooled = idle.pollFirst();
+            while (pooled != null && pooled.physical.isClosed())
+            {
+                discard(pooled);
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null)
+            {
+                pooled = open();
+            }
+
+            pooled.lend(leakDetectionThresholdMillis > 0);
+            borrowed.add(pooled);
+            return pooled.proxy;
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The maximum number of connections the pool will lend out at once
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of connections currently borrowed
+     */
+    public int getActiveConnections()
+    {
+        return borrowed.size();
+    }
+
+    /**
+     * @return The number of open connections waiting in the pool
+     */
+    public int getIdleConnections()
+    {
+        return idle.size();
+    }
+
+    /**
+     * @return The number of physical connections currently open, borrowed or idle
+     */
+    public int getTotalConnections()
+    {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return The number of prepareStatement calls served from a statement cache
+     */
+    public long getStatementCacheHits()
+    {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return The number of prepareStatement calls that had to prepare a new statement
+     */
+    public long getStatementCacheMisses()
+    {
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * @return The number of cached statements closed to make room for newer ones
+     */
+    public long getStatementCacheEvictions()
+    {
+        return statementCacheEvictions.sum();
+    }
+
+    /**
+     * Stops the housekeeper and closes every idle connection. Borrowed connections are closed as they are returned.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null)
+        {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection open() throws SQLException
+    {
+        Connection physical = dataSource.getConnection();
+        totalConnections.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void discard(PooledConnection pooled)
+    {
+        totalConnections.decrementAndGet();
+        if (pooled.statements != null)
+        {
+            pooled.statements.clear();
+        }
+        try
+        {
+            pooled.physical.close();
+        }
+        catch (SQLException e)
+        {
+            logger.debug("Failed to close pooled connection", e);
+        }
+    }
+
+    /**
+     * Puts a connection back in the pool once its borrower has closed it. Connections left in a transaction are
+     * rolled back, and broken connections are discarded rather than reused.
+     */
+    private void release(PooledConnection pooled)
+    {
+        borrowed.remove(pooled);
+        try
+        {
+            boolean reusable = !closed && !pooled.physical.isClosed();
+            if (reusable && pooled.statements != null)
+            {
+                pooled.statements.checkInAll();
+            }
+            if (reusable && !pooled.physical.getAutoCommit())
+            {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+
+            if (reusable)
+            {
+                pooled.lastReturnedMillis = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+            else
+            {
+                discard(pooled);
+            }
+        }
+        catch (SQLException e)
+        {
+            logger.warn("Discarding connection that could not be reset", e);
+            discard(pooled);
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    private void housekeep()
+    {
+        try
+        {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Connection pool housekeeping failed", e);
+        }
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout, oldest first, without dropping below
+     * minSize. Idle connections are kept most-recently-used first, so the oldest sit at the tail of the deque.
+     */
+    private void evictIdle()
+    {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        while (totalConnections.get() > minSize)
+        {
+            PooledConnection oldest = idle.peekLast();
+            if (oldest == null || oldest.lastReturnedMillis > cutoff || !idle.removeLastOccurrence(oldest))
+            {
+                return;
+            }
+            discard(oldest);
+        }
+    }
+
+    /**
+     * Opens connections until minSize are open. A permit is held while each one is opened so that filling the pool
+     * can never push it past maxSize.
+     */
+    private void fillToMinimum()
+    {
+        while (!closed && totalConnections.get() < minSize && permits.tryAcquire())
+        {
+            try
+            {
+                PooledConnection pooled = open();
+                pooled.lastReturnedMillis = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            }
+            catch (SQLException e)
+            {
+                logger.warn("Failed to open connection while filling pool", e);
+                return;
+            }
+            finally
+            {
+                permits.release();
+            }
+        }
+    }
+
+    private void detectLeaks()
+    {
+        if (leakDetectionThresholdMillis <= 0)
+        {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : borrowed)
+        {
+            if (!pooled.leakReported && now - pooled.borrowedAtMillis > leakDetectionThresholdMillis)
+            {
+                pooled.leakReported = true;
+                logger.warn("Connection held for more than " + leakDetectionThresholdMillis
+                        + "ms without being closed, possible leak", pooled.borrowSite);
+            }
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool together with the proxy that is handed to borrowers. A fresh proxy is
+     * made for each loan so that a borrower who keeps using a closed connection cannot reach the next borrower's
+     * session.
+     */
+    private class PooledConnection
+    {
+        private final Connection physical;
+        private final StatementCache statements;
+        private volatile Connection proxy;
+        private volatile long borrowedAtMillis;
+        private volatile long lastReturnedMillis;
+        private volatile Exception borrowSite;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection physical)
+        {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0
+                    ? new StatementCache(physical, statementCacheSize, statementCacheHits, statementCacheMisses,
+                            statementCacheEvictions)
+                    : null;
+        }
+
+        private void lend(boolean recordBorrowSite)
+        {
+            borrowedAtMillis = System.currentTimeMillis();
+            borrowSite = recordBorrowSite ? new Exception("Connection borrowed here") : null;
+            leakReported = false;
+            proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Loan());
+        }
+
+        /**
+         * Forwards calls to the physical connection until the borrower closes it, serving prepareStatement(sql) and
+         * prepareStatement(sql, autoGeneratedKeys) from the statement cache. Only the first close() returns the
+         * connection, even if several threads close the same proxy at once, so its permit is released exactly once.
+         */
+        private class Loan implements InvocationHandler
+        {
+            private final AtomicBoolean returned = new AtomicBoolean();
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+                switch (method.getName())
+                {
+                    case "close":
+                        if (returned.compareAndSet(false, true))
+                        {
+                            release(PooledConnection.this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned.get() || physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled" + physical;
+                    default:
+                        if (returned.get())
+                        {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                        if (statements != null && method.getName().equals("prepareStatement"))
+                        {
+                            if (args.length == 1)
+                            {
+                                return statements.prepare((Connection) proxy, (String) args[0],
+                                        Statement.NO_GENERATED_KEYS);
+                            }
+                            if (args.length == 2 && method.getParameterTypes()[1] == int.class)
+                            {
+                                return statements.prepare((Connection) proxy, (String) args[0], (Integer) args[1]);
+                            }
+                        }
+                        try
+                        {
+                            return method.invoke(physical, args);
+                        }
+                        catch (InvocationTargetException e)
+                        {
+                            throw e.getCause();
+                        }
+                }
+            }
+        }
+    }
+}
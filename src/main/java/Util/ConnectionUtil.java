@@ -1,8 +1,9 @@
 package Util;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 import org.h2.jdbcx.JdbcDataSource;
@@ -13,15 +14,18 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections are lent out by a bounded ConnectionPool, so every caller must
+ * close the connections it borrows, preferably with try-with-resources. The
+ * pool is tuned with the socialmedia.pool.* system properties read below.
  */
 public class ConnectionUtil {
 
 	/**
 	 * url will represent our connection string. Since this is an in-memory db, we
-	 * will represent a file location to store the data
+	 * will represent a file location to store the data. It can be pointed at another
+	 * database with socialmedia.db.url, which the benchmarks use to stay out of ./h2.
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static String url = Config.getString("db.url", "jdbc:h2:./h2/db;");
 	/**
 	 * Default username for connecting to h2
 	 */
@@ -32,42 +36,102 @@ public class ConnectionUtil {
 	private static String password = "sa";
 
 	/**
-	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
+	 * DataSource that opens the physical connections held by the pool.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static JdbcDataSource dataSource = new JdbcDataSource();
 
 	/**
-	 * static initialization block to establish credentials for DataSoure Pool
+	 * Set once the pool has started.
+	 */
+	private static volatile boolean poolStarted;
+
+	/**
+	 * static initialization block to establish credentials for the DataSource
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		dataSource.setURL(url);
+		dataSource.setUser(username);
+		dataSource.setPassword(password);
 	}
 
 	/**
-	 * @return an active connection to the database
+	 * Holds the bounded pool that lends out connections and takes them back when
+	 * they are closed. The pool is started, and the schema migrated, the first time
+	 * a connection or the pool itself is asked for, so a storage engine that never
+	 * uses H2 never opens the database.
 	 */
-	public static Connection getConnection() {
-		try {
-			return pool.getConnection();
-		} catch (SQLException e) {
-			e.printStackTrace();
+	private static class PoolHolder {
+		private static final ConnectionPool pool = startPool();
+	}
+
+	private static ConnectionPool startPool() {
+		ConnectionPool pool = new ConnectionPool(dataSource,
+				Config.getInt("pool.minSize", 2),
+				getMaxPoolSize(),
+				Config.getLong("pool.acquireTimeoutMillis", 5000),
+				Config.getLong("pool.idleTimeoutMillis", 60000),
+				Config.getLong("pool.leakDetectionThresholdMillis", 60000),
+				Config.getLong("pool.housekeepingPeriodMillis", 5000),
+				Config.getInt("pool.statementCacheSize", 32));
+
+		if (Config.getBoolean("schema.migrateOnStartup", true)) {
+			try (Connection connection = pool.getConnection()) {
+				SchemaMigrator.migrate(connection);
+			} catch (SQLException e) {
+				throw new ExceptionInInitializerError(e);
+			}
 		}
+		poolStarted = true;
+		return pool;
+	}
+
+	/**
+	 * @return an active connection to the database, which is returned to the pool when closed
+	 * @throws SQLException if no connection becomes available within the acquire timeout
+	 */
+	public static Connection getConnection() throws SQLException {
+		return PoolHolder.pool.getConnection();
+	}
+
+	/**
+	 * @return the pool behind getConnection(), for monitoring and sizing. This starts
+	 * the pool if nothing has used it yet; see getStartedPool.
+	 */
+	public static ConnectionPool getPool() {
+		return PoolHolder.pool;
+	}
 
-		return null;
+	/**
+	 * @return the pool if something has already used the database, otherwise null,
+	 * so monitoring never opens the database on an engine that does not use it
+	 */
+	public static ConnectionPool getStartedPool() {
+		return poolStarted ? PoolHolder.pool : null;
+	}
+
+	/**
+	 * @return the most connections the pool lends out at once, from socialmedia.pool.maxSize,
+	 * without starting the pool
+	 */
+	public static int getMaxPoolSize() {
+		return Config.getInt("pool.maxSize", 10);
 	}
 
 	/**
 	 * For the purpose of testing, we will need to drop and recreate our database
-	 * tables to keep it consistent across all tests. The method will read the sql
-	 * file in resources. This will be performed before every test.
+	 * tables to keep it consistent across all tests. The method drops every table,
+	 * rebuilds the schema by running all migrations, then loads the test data from
+	 * the sql file in resources. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
-		try {
-			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
-		} catch (SQLException | FileNotFoundException e) {
+		try (FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
+				Connection connection = getConnection()) {
+			try (PreparedStatement ps = connection.prepareStatement("drop all objects")) {
+				ps.execute();
+			}
+			SchemaMigrator.migrate(connection);
+			RunScript.execute(connection, sqlReader);
+		} catch (SQLException | IOException e) {
 			e.printStackTrace();
 		}
 	}
@@ -0,0 +1,89 @@
+package Util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The executor that runs the blocking work behind the services' asynchronous methods. It has one thread per pooled
+ * connection by default (socialmedia.db.executor.threads), so its threads rarely wait on the ConnectionPool, and a
+ * bounded queue (socialmedia.db.executor.queueCapacity, default 10000). Work submitted while the queue is full is
+ * rejected instead of queueing without bound; the returned future fails with a RejectedExecutionException.
+ *
+ * Work submitted from a virtual thread, such as a request handler in the server's VIRTUAL execution mode, runs
+ * right away on that thread instead. Blocking a virtual thread on JDBC is what that mode is for, and handing the work
+ * to a pool of platform threads would cap concurrent database work at the pool's size and queue the rest here, where
+ * the ConnectionPool's semaphore and acquire timeout are meant to be the only limit.
+ */
+public class DatabaseExecutor
+{
+    private static final ThreadPoolExecutor executor;
+
+    static
+    {
+        int threads = Math.max(1, Config.getInt("db.executor.threads", ConnectionUtil.getMaxPoolSize()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, Config.getInt("db.executor.queueCapacity", 10000))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "database-executor-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private DatabaseExecutor()
+    {
+    }
+
+    /**
+     * Runs blocking work on the executor, or on the calling thread if it is a virtual thread.
+     * @param work The work to run, usually one or more DAO calls
+     * @return A future that completes with the work's result, or fails with the exception it threw or with a
+     *  RejectedExecutionException if the queue was full
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> work)
+    {
+        if (Thread.currentThread().isVirtual())
+        {
+            try
+            {
+                return CompletableFuture.completedFuture(work.get());
+            }
+            catch (RuntimeException e)
+            {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        try
+        {
+            return CompletableFuture.supplyAsync(work, executor);
+        }
+        catch (RejectedExecutionException e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread
+     */
+    public static int getQueuedTasks()
+    {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return The number of threads currently running a task
+     */
+    public static int getActiveThreads()
+    {
+        return executor.getActiveCount();
+    }
+}
@@ -0,0 +1,53 @@
+package Util;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import Model.Account;
+import Model.BulkMessageResult;
+import Model.Message;
+
+/**
+ * Holds the single ObjectMapper used by the application along with readers and writers for the types the API
+ * exchanges. ObjectMapper, ObjectReader and ObjectWriter are immutable and thread-safe once configured, and sharing
+ * them lets Jackson build each (de)serializer once instead of on every request.
+ */
+public class JsonUtil
+{
+    /**
+     * The shared mapper. Do not reconfigure it after startup.
+     */
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The generic type of a list of messages, for context.json(messages, MESSAGE_LIST_TYPE).
+     */
+    public static final Type MESSAGE_LIST_TYPE = new TypeReference<List<Message>>(){}.getType();
+
+    public static final ObjectReader ACCOUNT_READER = MAPPER.readerFor(Account.class);
+    public static final ObjectWriter ACCOUNT_WRITER = MAPPER.writerFor(Account.class);
+    public static final ObjectReader MESSAGE_READER = MAPPER.readerFor(Message.class);
+    public static final ObjectWriter MESSAGE_WRITER = MAPPER.writerFor(Message.class);
+    /**
+     * Message writer for appending many messages to one JsonGenerator. It leaves flushing to the generator's buffer
+     * instead of flushing the output after every message.
+     */
+    public static final ObjectWriter MESSAGE_STREAM_WRITER = MESSAGE_WRITER.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    public static final ObjectReader MESSAGE_LIST_READER = MAPPER.readerFor(MAPPER.constructType(MESSAGE_LIST_TYPE));
+    public static final ObjectWriter MESSAGE_LIST_WRITER = MAPPER.writerFor(MAPPER.constructType(MESSAGE_LIST_TYPE));
+    /**
+     * Writer for appending bulk import results to one JsonGenerator, without flushing after every result.
+     */
+    public static final ObjectWriter BULK_RESULT_STREAM_WRITER = MAPPER.writerFor(BulkMessageResult.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private JsonUtil()
+    {
+    }
+}
@@ -0,0 +1,158 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe latency histogram laid out the way HdrHistogram lays out its counts: values below 128 get a bucket
+ * each, and every power of two above that is split into 64 equal buckets, so any recorded value is reported to within
+ * 1.6% no matter how large it is. Recording is one array increment, so threads can record into a shared histogram
+ * while a load test runs, and the whole histogram is a few thousand longs whether it holds ten values or a billion.
+ *
+ * Values are whatever unit the caller records in; Metrics and HttpLoadBenchmark record microseconds. Values
+ * above MAX_VALUE are recorded as MAX_VALUE.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest value that can be recorded, about 12.7 days in microseconds.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records one value.
+     * @param value The value to record, which must not be negative
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("value must not be negative: " + value);
+        }
+
+        long clamped = Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(indexOf(clamped));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(clamped);
+        maxValue.accumulateAndGet(clamped, Math::max);
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one.
+     * @param other The histogram to add
+     */
+    public void add(LatencyHistogram other)
+    {
+        for (int i = 0; i < counts.length(); i++)
+        {
+            long count = other.counts.get(i);
+            if (count > 0)
+            {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        totalSum.addAndGet(other.totalSum.get());
+        maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+    }
+
+    /**
+     * @return The number of values recorded
+     */
+    public long getTotalCount()
+    {
+        return totalCount.get();
+    }
+
+    /**
+     * @return The sum of every value recorded, exactly
+     */
+    public long getTotalSum()
+    {
+        return totalSum.get();
+    }
+
+    /**
+     * @return The largest value recorded, exactly, or 0 if nothing was recorded
+     */
+    public long getMaxValue()
+    {
+        return maxValue.get();
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100
+     * @return The highest value that falls in the same bucket as the value at the percentile, never more than the
+     *  largest value recorded, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = totalCount.get();
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++)
+        {
+            seen += counts.get(i);
+            if (seen >= rank)
+            {
+                return Math.min(highestValueAt(i), getMaxValue());
+            }
+        }
+        return getMaxValue();
+    }
+
+    /**
+     * Counts the values in every bucket whose values are all at or below the given value. Values in the bucket the
+     * bound falls inside are left out, so the count may miss values less than the histogram's precision below it.
+     * @param value The upper bound
+     * @return The number of values recorded at or below the upper bound
+     */
+    public long getCountAtOrBelow(long value)
+    {
+        if (value < 0)
+        {
+            return 0;
+        }
+
+        int last = indexOf(Math.min(value, MAX_VALUE));
+        if (highestValueAt(last) > value)
+        {
+            last--;
+        }
+        long count = 0;
+        for (int i = 0; i <= last; i++)
+        {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Values below 2 * SUB_BUCKETS map to themselves. Larger values are shifted right until they fall between
+     * SUB_BUCKETS and 2 * SUB_BUCKETS, and each shift moves them SUB_BUCKETS buckets further along.
+     */
+    private static int indexOf(long value)
+    {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    private static long highestValueAt(int index)
+    {
+        int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+        return (((long) index - ((long) shift << SUB_BUCKET_BITS) + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,295 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe read-through cache with least-recently-used eviction and an optional time-to-live.
+ *
+ * Keys are spread over a fixed number of segments, each an access-ordered LinkedHashMap guarded by its own lock, so
+ * threads working on different keys rarely contend. The loader passed to get() runs outside the lock. If the key is
+ * written or invalidated while the loader runs, the loaded value is returned but not cached, so a slow load can
+ * never overwrite a newer write.
+ *
+ * Null is a valid value. A loader that returns null caches the absence of the key, which later reads treat as a hit,
+ * so a loader must only return null when the key is known not to exist. A loader that throws caches nothing and the
+ * exception reaches the caller, so a failed load is retried by the next read.
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class LruCache<K, V>
+{
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param maxSize The maximum number of entries to hold. Each segment holds an equal share.
+     * @param ttlMillis How long an entry stays valid after it is written, or 0 to keep entries until evicted
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(int maxSize, long ttlMillis)
+    {
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+        ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000 : 0;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss.
+     * @param key The key to look up
+     * @param loader Loads the value from the backing store on a miss. It may return null.
+     * @return The cached or loaded value
+     * @throws RuntimeException Whatever the loader threw, in which case nothing is cached
+     */
+    public V get(K key, Function<? super K, ? extends V> loader)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        long generation;
+        synchronized (segment)
+        {
+            Entry<V> entry = segment.get(key);
+            if (entry != null && !isExpired(entry))
+            {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null)
+            {
+                segment.remove(key);
+                evictions.increment();
+            }
+            generation = segment.generation;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        V value = loader.apply(key);
+        loads.increment();
+        loadNanos.add(System.nanoTime() - start);
+
+        synchronized (segment)
+        {
+            if (segment.generation == generation)
+            {
+                segment.put(key, new Entry<>(value, expiry()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value for the key without loading it.
+     * @param key The key to look up
+     * @param ifAbsent The value to return if the key is not cached or has expired
+     * @return The cached value, which may be null, or ifAbsent
+     */
+    public V getIfPresent(K key, V ifAbsent)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment)
+        {
+            Entry<V> entry = segment.get(key);
+            if (entry == null || isExpired(entry))
+            {
+                misses.increment();
+                return ifAbsent;
+            }
+            hits.increment();
+            return entry.value;
+        }
+    }
+
+    /**
+     * Caches a value, replacing any existing entry. Called after a write to keep the cache in step with the store.
+     * @param key The key to write
+     * @param value The new value, or null to record that the key does not exist
+     */
+    public void put(K key, V value)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment)
+        {
+            segment.generation++;
+            segment.put(key, new Entry<>(value, expiry()));
+        }
+    }
+
+    /**
+     * Removes the entry for a key so the next read loads it again.
+     * @param key The key to remove
+     */
+    public void invalidate(K key)
+    {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment)
+        {
+            segment.generation++;
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void invalidateAll()
+    {
+        for (Segment<K, V> segment : segments)
+        {
+            synchronized (segment)
+            {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of entries currently cached, including expired entries not yet removed
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment<K, V> segment : segments)
+        {
+            synchronized (segment)
+            {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of reads answered from the cache
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of reads that found no valid entry
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * @return The fraction of reads answered from the cache, or 0 if there have been no reads
+     */
+    public double getHitRate()
+    {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return The number of entries removed because the cache was full or the entry expired
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of times the loader has been called
+     */
+    public long getLoadCount()
+    {
+        return loads.sum();
+    }
+
+    /**
+     * @return The total time spent in the loader, in nanoseconds
+     */
+    public long getTotalLoadNanos()
+    {
+        return loadNanos.sum();
+    }
+
+    /**
+     * @return The average time spent in the loader per load, in nanoseconds, or 0 if nothing has been loaded
+     */
+    public double getAverageLoadNanos()
+    {
+        long count = loads.sum();
+        return count == 0 ? 0 : (double) loadNanos.sum() / count;
+    }
+
+    private Segment<K, V> segmentFor(K key)
+    {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private long expiry()
+    {
+        return ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos;
+    }
+
+    private boolean isExpired(Entry<V> entry)
+    {
+        return entry.expiresAtNanos != 0 && System.nanoTime() - entry.expiresAtNanos > 0;
+    }
+
+    /**
+     * A cached value and the System.nanoTime() at which it expires, or 0 if it never expires.
+     */
+    private static class Entry<V>
+    {
+        private final V value;
+        private final long expiresAtNanos;
+
+        private Entry(V value, long expiresAtNanos)
+        {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * One lock-guarded share of the cache. The generation is bumped by every write and invalidation so that a load
+     * which started before the write can tell its result is stale.
+     */
+    private static class Segment<K, V> extends LinkedHashMap<K, Entry<V>>
+    {
+        private final int maxSize;
+        private final LongAdder evictions;
+        private long generation;
+
+        private Segment(int maxSize, LongAdder evictions)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest)
+        {
+            if (size() > maxSize)
+            {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package Util;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics for the GET /metrics endpoint, rendered in the Prometheus text exposition format. It holds
+ *  * HTTP request counts by method, route and status code, and request latency by method and route
+ *  * Database time and failures by DAO method, recorded by JdbcTemplate, and for sampled statements the time spent
+ *    acquiring a connection, executing and mapping rows
+ *  * Connection pool, statement cache and DatabaseExecutor usage, read when the metrics are rendered. The pool and
+ *    statement cache are only reported once something has used the database, so a scrape never opens it
+ *  * Hit, miss and eviction counts of the registered LruCaches, and any other registered gauges
+ *
+ * Recording is one map lookup and a few atomic increments, with no locks: counts are LongAdders or atomic arrays and
+ * latencies go into LatencyHistograms in microseconds. Latencies are exported as Prometheus histograms in seconds with
+ * the fixed buckets in BUCKET_MICROS. Set socialmedia.metrics.enabled to false to stop recording requests and
+ * queries; the endpoint then only reports the gauges.
+ */
+public class Metrics
+{
+    private static final boolean ENABLED = Config.getBoolean("metrics.enabled", true);
+
+    /**
+     * Upper bounds of the exported histogram buckets, in microseconds.
+     */
+    private static final long[] BUCKET_MICROS = {100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000};
+
+    /**
+     * BUCKET_MICROS in seconds, formatted once as the le label values.
+     */
+    private static final String[] BUCKET_LABELS = new String[BUCKET_MICROS.length];
+
+    static
+    {
+        for (int i = 0; i < BUCKET_MICROS.length; i++)
+        {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKET_MICROS[i]).movePointLeft(6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    /**
+     * The highest status code counted separately; anything above it is counted under it.
+     */
+    private static final int MAX_STATUS = 599;
+
+    private static final Map<String, Map<String, RouteMetrics>> routesByMethod = new ConcurrentHashMap<>();
+    private static final Map<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+    private static final Map<String, LruCache<?, ?>> caches = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics()
+    {
+    }
+
+    /**
+     * Records one completed HTTP request.
+     * @param method The request method, such as GET
+     * @param route The path pattern of the endpoint that handled the request, such as messages/{message_id}, so
+     *  requests for different IDs are counted together
+     * @param status The response status code
+     * @param micros How long the request took, in microseconds
+     */
+    public static void recordRequest(String method, String route, int status, long micros)
+    {
+        if (!ENABLED)
+        {
+            return;
+        }
+
+        RouteMetrics metrics = routesByMethod.computeIfAbsent(method, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(route, key -> new RouteMetrics());
+        metrics.statusCounts.incrementAndGet(Math.max(0, Math.min(status, MAX_STATUS)));
+        metrics.latency.record(Math.max(0, micros));
+    }
+
+    /**
+     * Records one statement run by JdbcTemplate.
+     * @param operation The DAO method that ran the statement, such as MessageDAO.getMessageByID
+     * @param nanos How long the statement took, in nanoseconds, including reading its results
+     * @param failed Whether the statement failed with an SQLException
+     */
+    public static void recordQuery(String operation, long nanos, boolean failed)
+    {
+        if (!ENABLED)
+        {
+            return;
+        }
+
+        QueryMetrics metrics = queries.computeIfAbsent(operation, key -> new QueryMetrics());
+        metrics.latency.record(Math.max(0, nanos / 1000));
+        if (failed)
+        {
+            metrics.errors.increment();
+        }
+    }
+
+    /**
+     * Records the phases of one sampled statement run by JdbcTemplate.
+     * @param operation The DAO method that ran the statement
+     * @param acquireNanos Time spent waiting for a pooled connection
+     * @param executeNanos Time spent preparing and executing the statement
+     * @param mapNanos Time spent reading and mapping its rows
+     */
+    public static void recordQueryPhases(String operation, long acquireNanos, long executeNanos, long mapNanos)
+    {
+        if (!ENABLED)
+        {
+            return;
+        }
+
+        QueryMetrics metrics = queries.computeIfAbsent(operation, key -> new QueryMetrics());
+        metrics.acquire.record(Math.max(0, acquireNanos / 1000));
+        metrics.execute.record(Math.max(0, executeNanos / 1000));
+        metrics.map.record(Math.max(0, mapNanos / 1000));
+    }
+
+    /**
+     * Reports a cache's size, hits, misses and evictions under the given name. A cache registered under a name that
+     * is already taken replaces the earlier one, so the metrics follow the most recently created service.
+     * @param name The cache label, such as messages
+     * @param cache The cache
+     */
+    public static void registerCache(String name, LruCache<?, ?> cache)
+    {
+        caches.put(name, cache);
+    }
+
+    /**
+     * Reports a value read when the metrics are rendered. A gauge registered under a name that is already taken
+     * replaces the earlier one.
+     * @param name The metric name, such as socialmedia_ingest_queued_messages
+     * @param help One line describing the metric
+     * @param value Reads the current value
+     */
+    public static void registerGauge(String name, String help, LongSupplier value)
+    {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    /**
+     * @return Every metric in the Prometheus text exposition format, version 0.0.4
+     */
+    public static String render()
+    {
+        StringBuilder out = new StringBuilder(16384);
+
+        header(out, "socialmedia_http_requests_total", "counter", "HTTP requests by method, route and status code.");
+        forEachRoute((method, route, metrics) -> {
+            for (int status = 0; status <= MAX_STATUS; status++)
+            {
+                long count = metrics.statusCounts.get(status);
+                if (count > 0)
+                {
+                    sample(out, "socialmedia_http_requests_total",
+                            "method=\"" + method + "\",route=\"" + escape(route) + "\",status=\"" + status + "\"", count);
+                }
+            }
+        });
+        header(out, "socialmedia_http_request_duration_seconds", "histogram", "HTTP request latency by method and route.");
+        forEachRoute((method, route, metrics) -> histogram(out, "socialmedia_http_request_duration_seconds",
+                "method=\"" + method + "\",route=\"" + escape(route) + "\"", metrics.latency));
+
+        Map<String, QueryMetrics> sortedQueries = new TreeMap<>(queries);
+        header(out, "socialmedia_db_query_duration_seconds", "histogram", "Database statement time by DAO method.");
+        sortedQueries.forEach((operation, metrics) -> histogram(out, "socialmedia_db_query_duration_seconds",
+                "operation=\"" + escape(operation) + "\"", metrics.latency));
+        header(out, "socialmedia_db_query_errors_total", "counter", "Database statements that failed, by DAO method.");
+        sortedQueries.forEach((operation, metrics) -> sample(out, "socialmedia_db_query_errors_total",
+                "operation=\"" + escape(operation) + "\"", metrics.errors.sum()));
+        header(out, "socialmedia_db_query_phase_duration_seconds", "histogram",
+                "Time sampled database statements spent in each phase, by DAO method.");
+        sortedQueries.forEach((operation, metrics) -> {
+            if (metrics.acquire.getTotalCount() > 0)
+            {
+                String labels = "operation=\"" + escape(operation) + "\",phase=";
+                histogram(out, "socialmedia_db_query_phase_duration_seconds", labels + "\"acquire\"", metrics.acquire);
+                histogram(out, "socialmedia_db_query_phase_duration_seconds", labels + "\"execute\"", metrics.execute);
+                histogram(out, "socialmedia_db_query_phase_duration_seconds", labels + "\"map\"", metrics.map);
+            }
+        });
+
+        ConnectionPool pool = ConnectionUtil.getStartedPool();
+        if (pool != null)
+        {
+            header(out, "socialmedia_db_pool_connections", "gauge", "Pooled connections by state.");
+            sample(out, "socialmedia_db_pool_connections", "state=\"active\"", pool.getActiveConnections());
+            sample(out, "socialmedia_db_pool_connections", "state=\"idle\"", pool.getIdleConnections());
+            header(out, "socialmedia_db_pool_max_connections", "gauge", "Most connections the pool will open.");
+            sample(out, "socialmedia_db_pool_max_connections", null, pool.getMaxSize());
+            header(out, "socialmedia_db_statement_cache_total", "counter", "Prepared statement cache lookups by result.");
+            sample(out, "socialmedia_db_statement_cache_total", "result=\"hit\"", pool.getStatementCacheHits());
+            sample(out, "socialmedia_db_statement_cache_total", "result=\"miss\"", pool.getStatementCacheMisses());
+            header(out, "socialmedia_db_statement_cache_evictions_total", "counter", "Prepared statements evicted from the cache.");
+            sample(out, "socialmedia_db_statement_cache_evictions_total", null, pool.getStatementCacheEvictions());
+        }
+
+        header(out, "socialmedia_db_executor_queued_tasks", "gauge", "Tasks waiting for a DatabaseExecutor thread.");
+        sample(out, "socialmedia_db_executor_queued_tasks", null, DatabaseExecutor.getQueuedTasks());
+        header(out, "socialmedia_db_executor_active_threads", "gauge", "DatabaseExecutor threads running a task.");
+        sample(out, "socialmedia_db_executor_active_threads", null, DatabaseExecutor.getActiveThreads());
+
+        Map<String, LruCache<?, ?>> sortedCaches = new TreeMap<>(caches);
+        header(out, "socialmedia_cache_requests_total", "counter", "Cache lookups by cache and result.");
+        sortedCaches.forEach((name, cache) -> {
+            sample(out, "socialmedia_cache_requests_total", "cache=\"" + escape(name) + "\",result=\"hit\"", cache.getHits());
+            sample(out, "socialmedia_cache_requests_total", "cache=\"" + escape(name) + "\",result=\"miss\"", cache.getMisses());
+        });
+        header(out, "socialmedia_cache_evictions_total", "counter", "Entries evicted from each cache.");
+        sortedCaches.forEach((name, cache) -> sample(out, "socialmedia_cache_evictions_total",
+                "cache=\"" + escape(name) + "\"", cache.getEvictions()));
+        header(out, "socialmedia_cache_size", "gauge", "Entries held by each cache.");
+        sortedCaches.forEach((name, cache) -> sample(out, "socialmedia_cache_size", "cache=\"" + escape(name) + "\"", cache.size()));
+
+        new TreeMap<>(gauges).forEach((name, gauge) -> {
+            header(out, name, "gauge", gauge.help);
+            sample(out, name, null, gauge.value.getAsLong());
+        });
+
+        return out.toString();
+    }
+
+    private static void forEachRoute(RouteVisitor visitor)
+    {
+        new TreeMap<>(routesByMethod).forEach((method, routes) ->
+                new TreeMap<>(routes).forEach((route, metrics) -> visitor.visit(method, route, metrics)));
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help)
+    {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value)
+    {
+        out.append(name);
+        if (labels != null)
+        {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a histogram recorded in microseconds as cumulative buckets, a sum and a count, all in seconds.
+     */
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram)
+    {
+        long count = histogram.getTotalCount();
+        for (int i = 0; i < BUCKET_MICROS.length; i++)
+        {
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(BUCKET_LABELS[i]).append("\"} ")
+                    .append(histogram.getCountAtOrBelow(BUCKET_MICROS[i])).append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getTotalSum() / 1e6).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+
+    /**
+     * Escapes a label value as the exposition format requires.
+     */
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private interface RouteVisitor
+    {
+        void visit(String method, String route, RouteMetrics metrics);
+    }
+
+    private static class RouteMetrics
+    {
+        private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS + 1);
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private static class QueryMetrics
+    {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram acquire = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LatencyHistogram map = new LatencyHistogram();
+    }
+
+    private static class Gauge
+    {
+        private final String help;
+        private final LongSupplier value;
+
+        private Gauge(String help, LongSupplier value)
+        {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package Util;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A growable array of longs stored outside the Java heap in a direct buffer, so a large index adds nothing for the
+ * garbage collector to trace or copy. Unset entries read as 0. Not thread-safe: callers guard reads and writes with
+ * their own lock.
+ */
+public class OffHeapLongArray
+{
+    /**
+     * The most entries a direct buffer can hold, since its size in bytes is an int.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+    private LongBuffer values;
+
+    /**
+     * @param initialCapacity The number of entries to allocate up front
+     */
+    public OffHeapLongArray(int initialCapacity)
+    {
+        values = allocate(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * @param index The entry to read
+     * @return The entry's value, or 0 if it was never set or is out of range
+     */
+    public long get(int index)
+    {
+        return index >= 0 && index < values.capacity() ? values.get(index) : 0;
+    }
+
+    /**
+     * Sets an entry, growing the array if needed.
+     * @param index The entry to set, which must not be negative
+     * @param value The value to store
+     */
+    public void set(int index, long value)
+    {
+        if (index >= values.capacity())
+        {
+            if (value == 0)
+            {
+                return;
+            }
+            grow(index);
+        }
+        values.put(index, value);
+    }
+
+    /**
+     * @return The number of entries currently allocated
+     */
+    public int capacity()
+    {
+        return values.capacity();
+    }
+
+    /**
+     * Copies the entries into a buffer at least twice as large that also holds index.
+     */
+    private void grow(int index)
+    {
+        if (index >= MAX_CAPACITY)
+        {
+            throw new IndexOutOfBoundsException("index " + index + " exceeds the maximum capacity " + MAX_CAPACITY);
+        }
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max((long) values.capacity() * 2, (long) index + 1));
+        LongBuffer grown = allocate(capacity);
+        grown.put(0, values, 0, values.capacity());
+        values = grown;
+    }
+
+    private static LongBuffer allocate(int capacity)
+    {
+        return ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+    }
+}
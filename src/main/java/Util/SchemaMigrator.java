@@ -0,0 +1,132 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.h2.tools.RunScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the database schema up to date by applying versioned migration scripts from db/migration on the classpath.
+ * Applied versions are recorded in the schema_version table, so each script runs exactly once per database and
+ * existing data is kept. To change the schema, add a new script and a new entry at the end of MIGRATIONS; never
+ * edit a script that has already been released.
+ */
+public class SchemaMigrator
+{
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * Every migration in the order it must be applied.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "create account and message tables", "V1__create_account_and_message.sql"),
+            new Migration(2, "allocate message ids from a sequence", "V2__message_id_sequence.sql"));
+
+    private SchemaMigrator()
+    {
+    }
+
+    /**
+     * Applies every migration that has not yet been applied to the database behind the connection.
+     * @param connection The connection to migrate through
+     * @throws SQLException If a migration fails. Migrations applied before the failure stay recorded.
+     */
+    public static void migrate(Connection connection) throws SQLException
+    {
+        migrate(connection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Applies every migration up to and including the target version that has not yet been applied.
+     * @param connection The connection to migrate through
+     * @param targetVersion The last version to apply
+     * @throws SQLException If a migration fails. Migrations applied before the failure stay recorded.
+     */
+    public static synchronized void migrate(Connection connection, int targetVersion) throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement("create table if not exists schema_version (version int primary key, description varchar(255), applied_at timestamp default current_timestamp)"))
+        {
+            ps.execute();
+        }
+
+        Set<Integer> applied = appliedVersions(connection);
+        for (Migration migration : MIGRATIONS)
+        {
+            if (migration.version <= targetVersion && !applied.contains(migration.version))
+            {
+                apply(connection, migration);
+                logger.info("Applied schema migration V" + migration.version + ": " + migration.description);
+            }
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection connection) throws SQLException
+    {
+        Set<Integer> versions = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement("select version from schema_version");
+             ResultSet results = ps.executeQuery())
+        {
+            while (results.next())
+            {
+                versions.add(results.getInt("version"));
+            }
+        }
+        return versions;
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException
+    {
+        String resource = "db/migration/" + migration.script;
+        try (InputStream script = SchemaMigrator.class.getClassLoader().getResourceAsStream(resource))
+        {
+            if (script == null)
+            {
+                throw new SQLException("Missing migration script " + resource);
+            }
+            try (Reader reader = new InputStreamReader(script, StandardCharsets.UTF_8))
+            {
+                RunScript.execute(connection, reader);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new SQLException("Could not read migration script " + resource, e);
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement("insert into schema_version(version, description) values (?, ?)"))
+        {
+            ps.setInt(1, migration.version);
+            ps.setString(2, migration.description);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * One versioned schema change and the script that makes it.
+     */
+    private static class Migration
+    {
+        private final int version;
+        private final String description;
+        private final String script;
+
+        private Migration(int version, String description, String script)
+        {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+        }
+    }
+}
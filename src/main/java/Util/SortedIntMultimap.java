@@ -0,0 +1,180 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe map from non-negative int keys to sorted sets of ints, stored as one int array per key in an array
+ * indexed by the key. Nothing is boxed: a key with a million values costs one int[] of about 4 MB rather than a
+ * million Integer objects and tree nodes, so even very large indexes give the garbage collector almost nothing to
+ * trace. Keys are expected to be dense, like database IDs, since the outer arrays grow to the largest key.
+ *
+ * Values are appended in place when they are larger than every value already under the key, which is the usual case
+ * for increasing IDs; anything else is inserted by binary search. Reads take a read lock and return copies.
+ */
+public class SortedIntMultimap
+{
+    private static final int[] EMPTY = new int[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] values = new int[16][];
+    private int[] sizes = new int[16];
+    private long size;
+
+    /**
+     * Adds a value under a key.
+     * @param key The key, which must not be negative
+     * @param value The value to add
+     * @return True if the value was added, false if the key already had it
+     */
+    public boolean add(int key, int value)
+    {
+        if (key < 0)
+        {
+            throw new IllegalArgumentException("key must not be negative: " + key);
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            if (key >= sizes.length)
+            {
+                int capacity = Math.max(sizes.length * 2, key + 1);
+                values = Arrays.copyOf(values, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+            }
+
+            int[] keyValues = values[key];
+            int count = sizes[key];
+            int position = count;
+            if (count > 0 && keyValues[count - 1] >= value)
+            {
+                position = Arrays.binarySearch(keyValues, 0, count, value);
+                if (position >= 0)
+                {
+                    return false;
+                }
+                position = -position - 1;
+            }
+
+            if (keyValues == null || count == keyValues.length)
+            {
+                keyValues = Arrays.copyOf(keyValues == null ? EMPTY : keyValues, count + (count >> 1) + 4);
+                values[key] = keyValues;
+            }
+            System.arraycopy(keyValues, position, keyValues, position + 1, count - position);
+            keyValues[position] = value;
+            sizes[key] = count + 1;
+            size++;
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a value from under a key. A key left with no values releases its array.
+     * @param key The key
+     * @param value The value to remove
+     * @return True if the value was removed, false if the key did not have it
+     */
+    public boolean remove(int key, int value)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if (key < 0 || key >= sizes.length)
+            {
+                return false;
+            }
+
+            int[] keyValues = values[key];
+            int count = sizes[key];
+            int position = count == 0 ? -1 : Arrays.binarySearch(keyValues, 0, count, value);
+            if (position < 0)
+            {
+                return false;
+            }
+
+            System.arraycopy(keyValues, position + 1, keyValues, position, count - position - 1);
+            sizes[key] = count - 1;
+            if (count == 1)
+            {
+                values[key] = null;
+            }
+            size--;
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key The key
+     * @return A copy of the key's values in ascending order, empty if it has none
+     */
+    public int[] get(int key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            if (key < 0 || key >= sizes.length || sizes[key] == 0)
+            {
+                return EMPTY;
+            }
+            return Arrays.copyOf(values[key], sizes[key]);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key The key
+     * @param after Only values greater than this are returned
+     * @param limit The maximum number of values to return
+     * @return A copy of up to limit of the key's values greater than after, in ascending order
+     */
+    public int[] getAfter(int key, int after, int limit)
+    {
+        lock.readLock().lock();
+        try
+        {
+            if (key < 0 || key >= sizes.length || sizes[key] == 0)
+            {
+                return EMPTY;
+            }
+
+            int[] keyValues = values[key];
+            int count = sizes[key];
+            int start = Arrays.binarySearch(keyValues, 0, count, after);
+            start = start >= 0 ? start + 1 : -start - 1;
+            return Arrays.copyOfRange(keyValues, start, start + Math.min(limit, count - start));
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of values under all keys
+     */
+    public long size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package Util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A least-recently-used cache of prepared statements belonging to one pooled physical connection, keyed by SQL text
+ * and whether generated keys were requested. Statements handed out by the cache are proxies whose close() clears
+ * their parameters and returns them to the cache, so DAO code can keep closing statements with try-with-resources
+ * while H2 only parses and plans each query once per connection.
+ *
+ * A cache is only ever used by the thread currently borrowing its connection, so it is not synchronized.
+ */
+class StatementCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection physical;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<Key, CachedStatement> statements;
+
+    /**
+     * @param physical The connection the statements are prepared on
+     * @param maxSize The number of statements to keep before evicting the least recently used one
+     * @param hits Counter shared across the pool, incremented when a cached statement is reused
+     * @param misses Counter shared across the pool, incremented when a statement has to be prepared
+     * @param evictions Counter shared across the pool, incremented when a statement is evicted
+     */
+    StatementCache(Connection physical, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions)
+    {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest)
+            {
+                if (size() <= StatementCache.this.maxSize)
+                {
+                    return false;
+                }
+                StatementCache.this.evictions.increment();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the given SQL, preparing and caching a new one on a miss. If the cached
+     * statement for this SQL is already checked out, an uncached statement is prepared instead.
+     * @param owner The borrower's connection proxy, returned from the statement's getConnection()
+     * @param sql The SQL text of the statement
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return A statement that returns itself to the cache when closed
+     * @throws SQLException If the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException
+    {
+        Key key = new Key(sql, autoGeneratedKeys);
+        CachedStatement cached = statements.get(key);
+        if (cached == null)
+        {
+            misses.increment();
+            cached = new CachedStatement(physical.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+        }
+        else if (cached.checkedOut)
+        {
+            misses.increment();
+            return physical.prepareStatement(sql, autoGeneratedKeys);
+        }
+        else
+        {
+            hits.increment();
+        }
+
+        cached.checkOut(owner);
+        return cached.proxy;
+    }
+
+    /**
+     * Checks in any statements the borrower forgot to close. Called when the connection is returned to the pool.
+     * @throws SQLException If a statement cannot be reset
+     */
+    void checkInAll() throws SQLException
+    {
+        for (CachedStatement cached : statements.values())
+        {
+            if (cached.checkedOut)
+            {
+                cached.checkIn();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called when the physical connection is discarded.
+     */
+    void clear()
+    {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext())
+        {
+            iterator.next().evict();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * A statement held by the cache together with the proxy handed to borrowers.
+     */
+    private static class CachedStatement implements InvocationHandler
+    {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private Connection owner;
+        private boolean checkedOut;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement)
+        {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        private void checkOut(Connection owner)
+        {
+            this.owner = owner;
+            checkedOut = true;
+        }
+
+        /**
+         * Removes the statement from service, closing it now if it is idle or when its borrower is done with it.
+         */
+        private void evict()
+        {
+            evicted = true;
+            if (!checkedOut)
+            {
+                closeQuietly();
+            }
+        }
+
+        private void checkIn() throws SQLException
+        {
+            checkedOut = false;
+            owner = null;
+            if (evicted)
+            {
+                closeQuietly();
+            }
+            else
+            {
+                statement.clearParameters();
+                statement.clearBatch();
+            }
+        }
+
+        private void closeQuietly()
+        {
+            try
+            {
+                statement.close();
+            }
+            catch (SQLException e)
+            {
+                logger.debug("Failed to close cached statement", e);
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            switch (method.getName())
+            {
+                case "close":
+                    if (checkedOut)
+                    {
+                        checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return !checkedOut || statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + statement;
+                default:
+                    if (!checkedOut)
+                    {
+                        throw new SQLException("Statement has already been closed");
+                    }
+                    try
+                    {
+                        return method.invoke(statement, args);
+                    }
+                    catch (InvocationTargetException e)
+                    {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Identifies a cached statement by its SQL text and generated-keys mode.
+     */
+    private static class Key
+    {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        private Key(String sql, int autoGeneratedKeys)
+        {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * sql.hashCode() + autoGeneratedKeys;
+        }
+    }
+}
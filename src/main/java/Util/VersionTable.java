@@ -0,0 +1,48 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version numbers for a large set of int keys, such as message IDs, in a fixed amount of memory, for building HTTP
+ * ETags. Keys are spread over a fixed number of stripes, each holding the version of the latest write to any of its
+ * keys, and versions come from one increasing sequence. Every bump raises the key's stripe to a version it has never
+ * held, so a version read before a write never matches one read after it. Keys that share a stripe bump each other,
+ * which only costs a client a full response it did not strictly need. Reads and bumps are lock-free.
+ */
+public class VersionTable
+{
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray stripes;
+    private final int mask;
+
+    /**
+     * @param stripes The number of stripes, rounded up to a power of two. More stripes mean fewer keys share one.
+     */
+    public VersionTable(int stripes)
+    {
+        int size = Integer.highestOneBit(Math.max(1, Math.min(stripes, 1 << 30)) * 2 - 1);
+        this.stripes = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * @param key The key
+     * @return The key's current version, 0 if none of the keys in its stripe has been written
+     */
+    public long get(int key)
+    {
+        return stripes.get(key & mask);
+    }
+
+    /**
+     * Records a write to a key. Call it after the write is visible to readers, so that a reader who sees the new
+     * version also sees the new data.
+     * @param key The key that was written
+     */
+    public void bump(int key)
+    {
+        long version = sequence.incrementAndGet();
+        stripes.accumulateAndGet(key & mask, version, Math::max);
+    }
+}
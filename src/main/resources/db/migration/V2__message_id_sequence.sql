@@ -0,0 +1,7 @@
+-- Moves message_id from an identity column to a named sequence, so ids can be reserved before the rows that use them
+-- are inserted. Inserts that leave message_id out still draw from the sequence through the column default. Ids are
+-- reserved in blocks with "select next value for message_id_seq from system_range(1, ?)".
+create sequence if not exists message_id_seq start with 1;
+alter sequence message_id_seq restart with (select coalesce(max(message_id), 0) + 1 from message);
+alter table message alter column message_id drop identity;
+alter table message alter column message_id set default next value for message_id_seq;
@@ -0,0 +1,131 @@
+package Benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Util.SchemaMigrator;
+
+/**
+ * Measures the per-account lookup behind MessageDAO.getMessagesByAccountID as the message table grows to 10M rows,
+ * on the fully migrated schema. Messages are spread evenly over ACCOUNTS accounts, so each account owns
+ * rows / ACCOUNTS messages, and the lookup reads them from the (posted_by, message_id) index.
+ *
+ * Each row count gets its own file database under target/benchmark-db, which is filled once and reused by later
+ * runs. Filling the 10M row database takes a few minutes. To run only the smaller sizes:
+ *
+ *   java -cp ... org.openjdk.jmh.Main AccountMessagesLookupBenchmark -p rows=10000,100000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountMessagesLookupBenchmark
+{
+    private static final int ACCOUNTS = 1000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private Connection connection;
+    private PreparedStatement allForAccount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        String url = "jdbc:h2:" + directory.getAbsolutePath() + "/lookup-" + rows;
+        connection = DriverManager.getConnection(url, "sa", "sa");
+        SchemaMigrator.migrate(connection);
+        fill();
+
+        allForAccount = connection.prepareStatement("select message_id, posted_by, message_text, time_posted_epoch from Message where posted_by = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        connection.close();
+    }
+
+    /**
+     * The query behind GET /accounts/{account_id}/messages.
+     */
+    @Benchmark
+    public void allMessagesForAccount(Blackhole blackhole) throws SQLException
+    {
+        read(allForAccount, blackhole);
+    }
+
+    private void read(PreparedStatement ps, Blackhole blackhole) throws SQLException
+    {
+        ps.setInt(1, ThreadLocalRandom.current().nextInt(ACCOUNTS) + 1);
+        try (ResultSet results = ps.executeQuery())
+        {
+            while (results.next())
+            {
+                blackhole.consume(results.getInt(1));
+                blackhole.consume(results.getString(3));
+            }
+        }
+    }
+
+    /**
+     * Inserts the accounts and messages unless an earlier run already did.
+     */
+    private void fill() throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement("select count(*) from message");
+             ResultSet result = ps.executeQuery())
+        {
+            result.next();
+            if (result.getInt(1) == rows)
+            {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement("delete from message"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("delete from account"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into account (account_id, username, password) select x, 'user' || x, 'password' from system_range(1, ?)"))
+        {
+            ps.setInt(1, ACCOUNTS);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) select mod(x, ?) + 1, 'message ' || x, 1669947792 + x from system_range(1, ?)"))
+        {
+            ps.setInt(1, ACCOUNTS);
+            ps.setInt(2, rows);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package Benchmark;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Model.Account;
+import Service.AccountService;
+
+/**
+ * Measures AccountService.loginAccount for existing accounts with the right password, with the wrong password, and
+ * for usernames that do not exist, through the real AccountDAO and the username caches. Uses the same 1k message
+ * database as MessageServiceBenchmark, which holds MessageServiceBenchmark.ACCOUNTS accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountServiceBenchmark
+{
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        System.setProperty("socialmedia.db.url", "jdbc:h2:" + directory.getAbsolutePath() + "/service-1000");
+        MessageServiceBenchmark.fill(1000);
+        accountService = new AccountService();
+    }
+
+    @Benchmark
+    public Account loginAccount()
+    {
+        return accountService.loginAccount(new Account("user" + randomAccount(), "password"));
+    }
+
+    @Benchmark
+    public Account loginAccountWrongPassword()
+    {
+        return accountService.loginAccount(new Account("user" + randomAccount(), "wrong password"));
+    }
+
+    /**
+     * Logs in with usernames drawn from a space 100 times larger than the negative cache, so most lookups miss it
+     * and go to the database.
+     */
+    @Benchmark
+    public Account loginAccountUnknownUser()
+    {
+        return accountService.loginAccount(new Account("nobody" + ThreadLocalRandom.current().nextInt(1000000), "password"));
+    }
+
+    private static int randomAccount()
+    {
+        return ThreadLocalRandom.current().nextInt(MessageServiceBenchmark.ACCOUNTS) + 1;
+    }
+}
@@ -0,0 +1,270 @@
+package Benchmark;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+
+/**
+ * Compares request latency between the PLATFORM and VIRTUAL values of socialmedia.server.executionMode as the number
+ * of concurrent clients grows. This is not a JMH benchmark: JMH times one call at a time, while this drives thousands
+ * of closed-loop HTTP clients, each sending its next request as soon as the previous one is answered.
+ *
+ * Each client mostly reads 20-message pages of one account's messages, and 1 in 20 requests reads a 1000-message
+ * page of all messages, which stands in for a slow query. The server runs in a child JVM so neither process needs
+ * more than one file descriptor per connection. To run:
+ *
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) Benchmark.ExecutionModeLoadBenchmark
+ *
+ * Settings are read from system properties: load.modes (default PLATFORM,VIRTUAL), load.clients (default
+ * 1000,5000,10000), load.warmupSeconds (default 5), load.seconds (default 20) and load.port (default 8095).
+ */
+public class ExecutionModeLoadBenchmark
+{
+    private static final int MESSAGES = 10000;
+
+    public static void main(String[] args) throws Exception
+    {
+        String[] modes = System.getProperty("load.modes", "PLATFORM,VIRTUAL").split(",");
+        String[] clientCounts = System.getProperty("load.clients", "1000,5000,10000").split(",");
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        int seconds = Integer.getInteger("load.seconds", 20);
+        int port = Integer.getInteger("load.port", 8095);
+
+        System.out.printf("%-8s %7s %10s %9s %9s %9s %9s %7s%n", "mode", "clients", "req/s", "p50 ms", "p99 ms",
+                "p99.9 ms", "max ms", "errors");
+        for (String mode : modes)
+        {
+            Process server = startServer(mode.trim(), port);
+            try
+            {
+                awaitServer(port);
+                for (String clients : clientCounts)
+                {
+                    Result result = run(port, Integer.parseInt(clients.trim()), warmupSeconds, seconds);
+                    System.out.printf("%-8s %7s %10.0f %9.1f %9.1f %9.1f %9.1f %7d%n", mode.trim(), clients.trim(),
+                            result.throughput, result.percentile(0.50), result.percentile(0.99),
+                            result.percentile(0.999), result.percentile(1.0), result.errors);
+                }
+            }
+            finally
+            {
+                server.destroy();
+                server.waitFor();
+            }
+        }
+    }
+
+    /**
+     * Starts the server in a child JVM with the same classpath and the given execution mode.
+     */
+    private static Process startServer(String mode, int port) throws Exception
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                "-Dsocialmedia.server.executionMode=" + mode,
+                "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn",
+                ServerMain.class.getName(), String.valueOf(port))
+                .inheritIO()
+                .start();
+    }
+
+    private static void awaitServer(int port) throws InterruptedException
+    {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/messages/1")).build();
+        for (int attempt = 0; attempt < 300; attempt++)
+        {
+            try
+            {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                return;
+            }
+            catch (Exception e)
+            {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    /**
+     * Runs the given number of clients for the warmup and measurement periods and collects the latencies of the
+     * requests completed during measurement.
+     */
+    private static Result run(int port, int clientCount, int warmupSeconds, int seconds) throws InterruptedException
+    {
+        try (HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build())
+        {
+            Phase phase = new Phase();
+            List<LoadClient> clients = new ArrayList<>(clientCount);
+            List<Thread> threads = new ArrayList<>(clientCount);
+            for (int i = 0; i < clientCount; i++)
+            {
+                LoadClient client = new LoadClient(http, port, phase);
+                clients.add(client);
+                threads.add(Thread.ofVirtual().start(client));
+            }
+
+            Thread.sleep(warmupSeconds * 1000L);
+            phase.recording = true;
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1000L);
+            phase.recording = false;
+            long elapsed = System.nanoTime() - start;
+            phase.running = false;
+            for (Thread thread : threads)
+            {
+                thread.join();
+            }
+
+            int total = 0;
+            int errors = 0;
+            for (LoadClient client : clients)
+            {
+                total += client.count;
+                errors += client.errors;
+            }
+            long[] latencies = new long[total];
+            int offset = 0;
+            for (LoadClient client : clients)
+            {
+                System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+                offset += client.count;
+            }
+            Arrays.sort(latencies);
+            return new Result(latencies, errors, total / (elapsed / 1e9));
+        }
+    }
+
+    /**
+     * Starts the application for the load test on a freshly reset database holding MESSAGES messages.
+     */
+    public static class ServerMain
+    {
+        public static void main(String[] args) throws SQLException
+        {
+            ConnectionUtil.resetTestDatabase();
+            try (Connection connection = ConnectionUtil.getConnection();
+                 PreparedStatement ps = connection.prepareStatement("insert into message (posted_by, message_text, time_posted_epoch) select 1, 'load message ' || x, 1669947792 + x from system_range(1, ?)"))
+            {
+                ps.setInt(1, MESSAGES);
+                ps.executeUpdate();
+            }
+            new SocialMediaController().startAPI().start(Integer.parseInt(args[0]));
+        }
+    }
+
+    /**
+     * Flags shared by every client of one run.
+     */
+    private static class Phase
+    {
+        private volatile boolean running = true;
+        private volatile boolean recording;
+    }
+
+    /**
+     * One closed-loop client. Latencies are only recorded while the run is in its measurement period.
+     */
+    private static class LoadClient implements Runnable
+    {
+        private final HttpClient http;
+        private final int port;
+        private final Phase phase;
+        private long[] latencies = new long[256];
+        private int count;
+        private int errors;
+
+        private LoadClient(HttpClient http, int port, Phase phase)
+        {
+            this.http = http;
+            this.port = port;
+            this.phase = phase;
+        }
+
+        @Override
+        public void run()
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (phase.running)
+            {
+                int after = random.nextInt(MESSAGES);
+                String path = random.nextInt(20) == 0
+                        ? "/messages?limit=1000&after=" + after
+                        : "/accounts/1/messages?limit=20&after=" + after;
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                        .timeout(Duration.ofSeconds(60))
+                        .build();
+
+                long start = System.nanoTime();
+                boolean ok;
+                try
+                {
+                    ok = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                }
+                catch (Exception e)
+                {
+                    ok = false;
+                }
+                long latency = System.nanoTime() - start;
+
+                if (phase.recording)
+                {
+                    if (!ok)
+                    {
+                        errors++;
+                    }
+                    if (count == latencies.length)
+                    {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = latency;
+                }
+            }
+        }
+    }
+
+    /**
+     * The sorted latencies of one run, in nanoseconds.
+     */
+    private static class Result
+    {
+        private final long[] latencies;
+        private final int errors;
+        private final double throughput;
+
+        private Result(long[] latencies, int errors, double throughput)
+        {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.throughput = throughput;
+        }
+
+        /**
+         * @return The latency at the given quantile in milliseconds, or 0 if nothing was recorded
+         */
+        private double percentile(double quantile)
+        {
+            if (latencies.length == 0)
+            {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+        }
+    }
+}
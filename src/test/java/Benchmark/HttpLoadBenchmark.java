@@ -0,0 +1,474 @@
+package Benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.LatencyHistogram;
+import io.javalin.Javalin;
+
+/**
+ * An end-to-end load test of the API started by SocialMediaController.startAPI(). It registers accounts and seeds
+ * messages through the API, then sends a weighted mix of register, login, post, read-by-ID, list-by-account, patch
+ * and delete requests and prints the throughput, error count and latency percentiles of each endpoint. Like
+ * ExecutionModeLoadBenchmark this is a plain main class rather than a JMH benchmark, since it measures many
+ * concurrent requests rather than one call at a time.
+ *
+ * Two load models are supported. CLOSED runs load.clients virtual threads that each send their next request as soon
+ * as the previous one is answered. That finds the highest throughput, but hides queueing: while the server stalls
+ * the clients stop sending, so a stall is recorded once rather than once for every request it held up, which is the
+ * coordinated omission problem. OPEN sends load.rate requests per second on a fixed schedule however slowly they are
+ * answered, each on its own virtual thread, and measures every latency from the moment the request was due rather
+ * than from when it was actually sent, so the latencies are the ones users arriving at that rate would see.
+ *
+ * By default the application is started in this JVM on a freshly reset test database; set load.baseUrl to drive a
+ * server that is already running instead. To run:
+ *
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) -Dload.mode=OPEN -Dload.rate=2000 Benchmark.HttpLoadBenchmark
+ *
+ * Settings are read from system properties: load.mode (CLOSED or OPEN, default CLOSED), load.clients (default 64),
+ * load.rate (default 1000), load.warmupSeconds (default 5), load.seconds (default 30), load.accounts (default 100),
+ * load.seedMessages (messages per account, default 10), load.port (default 8096), load.baseUrl, and load.mix, a
+ * comma separated list of endpoint:weight pairs that defaults to DEFAULT_MIX. A patch that races a delete of the
+ * same message is answered with 400 and counted as an error, so a mix heavy in both reports a few errors by design.
+ */
+public class HttpLoadBenchmark
+{
+    private static final String DEFAULT_MIX = "register:2,login:10,post:15,readById:35,listByAccount:25,patch:8,delete:5";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception
+    {
+        String mode = System.getProperty("load.mode", "CLOSED").trim().toUpperCase();
+        int clients = Integer.getInteger("load.clients", 64);
+        int rate = Integer.getInteger("load.rate", 1000);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 5);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int accounts = Integer.getInteger("load.accounts", 100);
+        int seedMessages = Integer.getInteger("load.seedMessages", 10);
+        int port = Integer.getInteger("load.port", 8096);
+        String baseUrl = System.getProperty("load.baseUrl");
+        Mix mix = new Mix(System.getProperty("load.mix", DEFAULT_MIX));
+
+        Javalin app = null;
+        if (baseUrl == null)
+        {
+            ConnectionUtil.resetTestDatabase();
+            app = new SocialMediaController().startAPI().start(port);
+            baseUrl = "http://localhost:" + port;
+        }
+
+        try (HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build())
+        {
+            Traffic traffic = new Traffic(http, baseUrl);
+            traffic.seed(accounts, seedMessages);
+
+            long elapsed = mode.equals("OPEN")
+                    ? runOpen(traffic, mix, rate, warmupSeconds, seconds)
+                    : runClosed(traffic, mix, clients, warmupSeconds, seconds);
+
+            System.out.println(mode.equals("OPEN") ? "OPEN loop, " + rate + " requests/s scheduled"
+                    : "CLOSED loop, " + clients + " clients");
+            traffic.print(elapsed / 1e9);
+        }
+        finally
+        {
+            if (app != null)
+            {
+                app.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs closed-loop clients for the warmup and measurement periods. Latencies are measured from when each request
+     * is sent, and only requests sent during measurement are recorded.
+     * @return The length of the measurement period in nanoseconds
+     */
+    private static long runClosed(Traffic traffic, Mix mix, int clients, int warmupSeconds, int seconds) throws InterruptedException
+    {
+        long measureStart = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        long end = measureStart + seconds * 1_000_000_000L;
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++)
+        {
+            threads.add(Thread.ofVirtual().start(() -> {
+                long sent;
+                while ((sent = System.nanoTime()) < end)
+                {
+                    traffic.send(mix.next(), sent, sent >= measureStart);
+                }
+            }));
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        return end - measureStart;
+    }
+
+    /**
+     * Starts requests at a constant rate for the warmup and measurement periods, each on its own virtual thread, and
+     * waits for them all to be answered. Each request is timed from its scheduled start, so one that is started late
+     * because the scheduler or the machine fell behind is charged for the delay. Requests scheduled during
+     * measurement are recorded.
+     * @return The length of the measurement period in nanoseconds
+     */
+    private static long runOpen(Traffic traffic, Mix mix, int rate, int warmupSeconds, int seconds)
+    {
+        double interval = 1e9 / rate;
+        long start = System.nanoTime();
+        long measureStart = start + warmupSeconds * 1_000_000_000L;
+        long end = measureStart + seconds * 1_000_000_000L;
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (long i = 0; ; i++)
+            {
+                long due = start + (long) (i * interval);
+                if (due >= end)
+                {
+                    break;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0)
+                {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = mix.next();
+                requests.execute(() -> traffic.send(operation, due, due >= measureStart));
+            }
+        }
+        return end - measureStart;
+    }
+
+    /**
+     * The API calls the load test makes. A call that needs an existing message falls back to POST while there are
+     * none.
+     */
+    private enum Operation
+    {
+        REGISTER("register"),
+        LOGIN("login"),
+        POST("post"),
+        READ_BY_ID("readById"),
+        LIST_BY_ACCOUNT("listByAccount"),
+        PATCH("patch"),
+        DELETE("delete");
+
+        private final String label;
+
+        Operation(String label)
+        {
+            this.label = label;
+        }
+
+        private static Operation forLabel(String label)
+        {
+            for (Operation operation : values())
+            {
+                if (operation.label.equalsIgnoreCase(label))
+                {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown endpoint in load.mix: " + label);
+        }
+    }
+
+    /**
+     * Picks operations at random in proportion to the weights given in load.mix. Operations left out get no traffic.
+     */
+    private static class Mix
+    {
+        private final int[] cumulativeWeights = new int[Operation.values().length];
+
+        private Mix(String mix)
+        {
+            int[] weights = new int[cumulativeWeights.length];
+            for (String entry : mix.split(","))
+            {
+                String[] parts = entry.split(":");
+                weights[Operation.forLabel(parts[0].trim()).ordinal()] = Integer.parseInt(parts[1].trim());
+            }
+            int total = 0;
+            for (int i = 0; i < weights.length; i++)
+            {
+                total += weights[i];
+                cumulativeWeights[i] = total;
+            }
+            if (total <= 0)
+            {
+                throw new IllegalArgumentException("load.mix has no positive weights: " + mix);
+            }
+        }
+
+        private Operation next()
+        {
+            int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++)
+            {
+                if (pick < cumulativeWeights[i])
+                {
+                    return Operation.values()[i];
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Builds and sends requests, keeps track of the accounts and messages that exist so requests name real ones, and
+     * records the latency and errors of each endpoint.
+     */
+    private static class Traffic
+    {
+        private final HttpClient http;
+        private final String baseUrl;
+        private final String runID = Long.toString(System.currentTimeMillis(), 36);
+        private final AtomicInteger usernames = new AtomicInteger();
+        private final List<Account> accounts = new CopyOnWriteArrayList<>();
+        private final MessageIDs messageIDs = new MessageIDs();
+        private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        private final LongAdder[] errors = new LongAdder[Operation.values().length];
+
+        private Traffic(HttpClient http, String baseUrl)
+        {
+            this.http = http;
+            this.baseUrl = baseUrl;
+            for (int i = 0; i < latencies.length; i++)
+            {
+                latencies[i] = new LatencyHistogram();
+                errors[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Registers accounts and posts messages for each of them, one request at a time and without recording.
+         */
+        private void seed(int accountCount, int messagesPerAccount)
+        {
+            for (int i = 0; i < accountCount; i++)
+            {
+                send(Operation.REGISTER, System.nanoTime(), false);
+            }
+            if (accounts.isEmpty())
+            {
+                throw new IllegalStateException("Could not register any accounts at " + baseUrl);
+            }
+            for (int i = 0; i < accountCount * messagesPerAccount; i++)
+            {
+                send(Operation.POST, System.nanoTime(), false);
+            }
+        }
+
+        /**
+         * Sends one request and waits for the answer.
+         * @param operation The call to make
+         * @param start When the request was due, which is what its latency is measured from
+         * @param record Whether to record the latency and any error
+         */
+        private void send(Operation operation, long start, boolean record)
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (accounts.isEmpty() && operation != Operation.REGISTER)
+            {
+                operation = Operation.REGISTER;
+            }
+            else if (messageIDs.isEmpty()
+                    && (operation == Operation.READ_BY_ID || operation == Operation.PATCH || operation == Operation.DELETE))
+            {
+                operation = Operation.POST;
+            }
+
+            HttpRequest request;
+            switch (operation)
+            {
+                case REGISTER:
+                    request = post("/register", "{\"username\":\"load-" + runID + "-" + usernames.incrementAndGet()
+                            + "\",\"password\":\"password\"}");
+                    break;
+                case LOGIN:
+                    request = post("/login", "{\"username\":\"" + randomAccount(random).username
+                            + "\",\"password\":\"password\"}");
+                    break;
+                case POST:
+                    request = post("/messages", "{\"posted_by\":" + randomAccount(random).id
+                            + ",\"message_text\":\"load test message " + random.nextInt() + "\",\"time_posted_epoch\":1669947792}");
+                    break;
+                case READ_BY_ID:
+                    request = builder("/messages/" + messageIDs.random(random)).GET().build();
+                    break;
+                case LIST_BY_ACCOUNT:
+                    request = builder("/accounts/" + randomAccount(random).id + "/messages").GET().build();
+                    break;
+                case PATCH:
+                    request = builder("/messages/" + messageIDs.random(random))
+                            .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"patched " + random.nextInt() + "\"}"))
+                            .build();
+                    break;
+                default:
+                    request = builder("/messages/" + messageIDs.take(random)).DELETE().build();
+                    break;
+            }
+
+            boolean ok;
+            try
+            {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                ok = response.statusCode() == 200;
+                if (ok && operation == Operation.REGISTER)
+                {
+                    JsonNode account = MAPPER.readTree(response.body());
+                    accounts.add(new Account(account.get("account_id").asInt(), account.get("username").asText()));
+                }
+                else if (ok && operation == Operation.POST)
+                {
+                    messageIDs.add(MAPPER.readTree(response.body()).get("message_id").asInt());
+                }
+            }
+            catch (Exception e)
+            {
+                ok = false;
+            }
+
+            if (record)
+            {
+                latencies[operation.ordinal()].record((System.nanoTime() - start) / 1000);
+                if (!ok)
+                {
+                    errors[operation.ordinal()].increment();
+                }
+            }
+        }
+
+        private Account randomAccount(ThreadLocalRandom random)
+        {
+            return accounts.get(random.nextInt(accounts.size()));
+        }
+
+        private HttpRequest.Builder builder(String path)
+        {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60));
+        }
+
+        private HttpRequest post(String path, String json)
+        {
+            return builder(path).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+        }
+
+        /**
+         * Prints one line per endpoint that received traffic and a line for all of them together.
+         * @param seconds The length of the measurement period
+         */
+        private void print(double seconds)
+        {
+            System.out.printf("%-14s %9s %9s %7s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s", "errors",
+                    "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            LatencyHistogram all = new LatencyHistogram();
+            long allErrors = 0;
+            for (Operation operation : Operation.values())
+            {
+                LatencyHistogram histogram = latencies[operation.ordinal()];
+                if (histogram.getTotalCount() > 0)
+                {
+                    print(operation.label, histogram, errors[operation.ordinal()].sum(), seconds);
+                    all.add(histogram);
+                    allErrors += errors[operation.ordinal()].sum();
+                }
+            }
+            print("all", all, allErrors, seconds);
+        }
+
+        private static void print(String label, LatencyHistogram histogram, long errorCount, double seconds)
+        {
+            System.out.printf("%-14s %9d %9.0f %7d %9.2f %9.2f %9.2f %9.2f%n", label, histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds, errorCount, histogram.getValueAtPercentile(50) / 1e3,
+                    histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                    histogram.getMaxValue() / 1e3);
+        }
+    }
+
+    private static class Account
+    {
+        private final int id;
+        private final String username;
+
+        private Account(int id, String username)
+        {
+            this.id = id;
+            this.username = username;
+        }
+    }
+
+    /**
+     * The IDs of the messages the load test has posted and not yet deleted, in an array so one can be picked at
+     * random in constant time.
+     */
+    private static class MessageIDs
+    {
+        private int[] ids = new int[1024];
+        private int size;
+
+        private synchronized void add(int id)
+        {
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private synchronized boolean isEmpty()
+        {
+            return size == 0;
+        }
+
+        /**
+         * @return A random ID, or 0, which no message has, if there are none
+         */
+        private synchronized int random(ThreadLocalRandom random)
+        {
+            return size == 0 ? 0 : ids[random.nextInt(size)];
+        }
+
+        /**
+         * Removes and returns a random ID, so it is deleted only once.
+         * @return The ID, or 0, which no message has, if there are none
+         */
+        private synchronized int take(ThreadLocalRandom random)
+        {
+            if (size == 0)
+            {
+                return 0;
+            }
+            int index = random.nextInt(size);
+            int id = ids[index];
+            ids[index] = ids[--size];
+            return id;
+        }
+    }
+}
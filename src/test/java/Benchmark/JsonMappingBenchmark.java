@@ -0,0 +1,62 @@
+package Benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Model.Message;
+import Util.JsonUtil;
+
+/**
+ * Compares what the message handlers allocate per request when they build a new ObjectMapper for every request
+ * ("perRequestMapper" benchmarks) against reusing the shared readers and writers in JsonUtil ("shared" benchmarks).
+ * Run with the GC profiler to see bytes allocated per operation (gc.alloc.rate.norm):
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main JsonMappingBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMappingBenchmark
+{
+    private final String body = "{\"posted_by\":1, \"message_text\": \"hello message\", \"time_posted_epoch\": 1669947792}";
+    private final Message message = new Message(2, 1, "hello message", 1669947792);
+
+    @Benchmark
+    public Message perRequestMapperRead() throws Exception
+    {
+        return new ObjectMapper().readValue(body, Message.class);
+    }
+
+    @Benchmark
+    public Message sharedReaderRead() throws Exception
+    {
+        return JsonUtil.MESSAGE_READER.readValue(body);
+    }
+
+    @Benchmark
+    public String perRequestMapperWrite() throws Exception
+    {
+        return new ObjectMapper().writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String sharedWriterWrite() throws Exception
+    {
+        return JsonUtil.MESSAGE_WRITER.writeValueAsString(message);
+    }
+}
@@ -0,0 +1,180 @@
+package Benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import Model.Message;
+import Service.MessageService;
+import Util.ConnectionUtil;
+import Util.JsonUtil;
+
+/**
+ * Measures the MessageService calls behind the message endpoints, through the real DAOs, connection pool and
+ * caches, against a message table of 1k, 100k or 1M rows spread over ACCOUNTS accounts. Run on its own or through
+ * the benchmarks profile in pom.xml, which also reports throughput and GC allocation:
+ *
+ *   mvn -Pbenchmarks verify
+ *
+ * ConnectionUtil is pointed at a file database under target/benchmark-db for each row count before it is first
+ * used, which works because JMH runs every row count in its own JVM. The database is filled once and reused; the
+ * messages addMessage adds are deleted again after each trial so the next one does not have to refill it. Leak
+ * detection is turned off because filling a million rows holds one connection for longer than its threshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageServiceBenchmark
+{
+    static final int ACCOUNTS = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private MessageService messageService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        System.setProperty("socialmedia.db.url", "jdbc:h2:" + directory.getAbsolutePath() + "/service-" + rows);
+        System.setProperty("socialmedia.pool.leakDetectionThresholdMillis", "0");
+        fill(rows);
+        messageService = new MessageService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        messageService.close();
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement delete = connection.prepareStatement("delete from message where message_id > ?");
+             PreparedStatement restart = connection.prepareStatement("alter sequence message_id_seq restart with " + (rows + 1)))
+        {
+            delete.setInt(1, rows);
+            delete.executeUpdate();
+            restart.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public Message addMessage()
+    {
+        return messageService.addMessage(new Message(randomAccount(), "a message of typical length for the benchmark", 1669947792));
+    }
+
+    /**
+     * Reads random messages, so the hit rate of the message cache falls as the table outgrows it.
+     */
+    @Benchmark
+    public Message getMessageByID()
+    {
+        return messageService.getMessageByID(ThreadLocalRandom.current().nextInt(rows) + 1);
+    }
+
+    /**
+     * What GET /messages/{message_id} did before the JSON cache: read the cached Message, then serialize it.
+     */
+    @Benchmark
+    public byte[] getMessageByIDSerialized() throws JsonProcessingException
+    {
+        Message message = messageService.getMessageByID(ThreadLocalRandom.current().nextInt(rows) + 1);
+        return message == null ? null : JsonUtil.MESSAGE_WRITER.writeValueAsBytes(message);
+    }
+
+    /**
+     * What GET /messages/{message_id} does now: serve the message's JSON bytes from the JSON cache.
+     */
+    @Benchmark
+    public byte[] getMessageJson()
+    {
+        return messageService.getMessageJson(ThreadLocalRandom.current().nextInt(rows) + 1);
+    }
+
+    @Benchmark
+    public byte[] getAccountMessagesJson()
+    {
+        return messageService.getAccountMessagesJson(randomAccount());
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages()
+    {
+        return messageService.getAllMessages();
+    }
+
+    /**
+     * Reads a random account's messages, rows / ACCOUNTS of them.
+     */
+    @Benchmark
+    public List<Message> getMessagesByAccountID()
+    {
+        return messageService.getMessagesByAccountID(randomAccount());
+    }
+
+    private static int randomAccount()
+    {
+        return ThreadLocalRandom.current().nextInt(ACCOUNTS) + 1;
+    }
+
+    /**
+     * Loads ACCOUNTS accounts and the given number of messages, spread evenly over the accounts, unless the
+     * database already holds exactly that many messages. Shared with AccountServiceBenchmark.
+     */
+    static void fill(int rows) throws SQLException
+    {
+        try (Connection connection = ConnectionUtil.getConnection())
+        {
+            try (PreparedStatement ps = connection.prepareStatement("select count(*) from message");
+                 ResultSet result = ps.executeQuery())
+            {
+                result.next();
+                if (result.getInt(1) == rows)
+                {
+                    return;
+                }
+            }
+
+            String[] statements = {
+                    "delete from message",
+                    "delete from account",
+                    "insert into account (account_id, username, password) select x, 'user' || x, 'password' from system_range(1, " + ACCOUNTS + ")",
+                    "alter table account alter column account_id restart with " + (ACCOUNTS + 1),
+                    "insert into message (message_id, posted_by, message_text, time_posted_epoch) select x, mod(x, " + ACCOUNTS + ") + 1, 'message ' || x, 1669947792 + x from system_range(1, " + rows + ")",
+                    "alter sequence message_id_seq restart with " + (rows + 1)
+            };
+            for (String statement : statements)
+            {
+                try (PreparedStatement ps = connection.prepareStatement(statement))
+                {
+                    ps.executeUpdate();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package Benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import DAO.MessageLogRepository;
+import Model.Message;
+import Util.SchemaMigrator;
+
+/**
+ * Compares the cost of storing one new message, the work behind POST /messages, in H2 (the insert MessageDAO runs,
+ * with the generated key read back) and in the MessageLogRepository. The log is measured with forceOnWrite off,
+ * its default, and on, where every append waits for its page to reach the disk. h2Insert ignores forceOnWrite.
+ *
+ * Each iteration starts from an empty log and a freshly migrated H2 database under target/benchmark-db, so neither
+ * side pays for what earlier iterations wrote.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageWriteBenchmark
+{
+    @Param({"false", "true"})
+    public boolean forceOnWrite;
+
+    private final Message message = new Message(1, "a message of typical length for the benchmark", 1669947792);
+    private Path logDirectory;
+    private MessageLogRepository log;
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException, SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        logDirectory = Paths.get("target/benchmark-db/message-log");
+        delete(logDirectory);
+        log = new MessageLogRepository(logDirectory, 64 * 1024 * 1024, forceOnWrite, 0, 50);
+
+        connection = DriverManager.getConnection("jdbc:h2:" + directory.getAbsolutePath() + "/write", "sa", "sa");
+        try (PreparedStatement ps = connection.prepareStatement("drop all objects"))
+        {
+            ps.execute();
+        }
+        SchemaMigrator.migrate(connection);
+        try (PreparedStatement ps = connection.prepareStatement("insert into account (account_id, username, password) values (1, 'user1', 'password')"))
+        {
+            ps.executeUpdate();
+        }
+        insert = connection.prepareStatement("insert into Message(posted_by, message_text, time_posted_epoch) values (?, ?, ?)", PreparedStatement.RETURN_GENERATED_KEYS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException, SQLException
+    {
+        log.close();
+        delete(logDirectory);
+        connection.close();
+    }
+
+    @Benchmark
+    public int h2Insert() throws SQLException
+    {
+        insert.setInt(1, message.getPosted_by());
+        insert.setString(2, message.getMessage_text());
+        insert.setLong(3, message.getTime_posted_epoch());
+        insert.executeUpdate();
+        try (ResultSet keys = insert.getGeneratedKeys())
+        {
+            keys.next();
+            return keys.getInt(1);
+        }
+    }
+
+    @Benchmark
+    public Message logAppend()
+    {
+        return log.addMessage(message);
+    }
+
+    private static void delete(Path directory) throws IOException
+    {
+        if (Files.exists(directory))
+        {
+            try (Stream<Path> paths = Files.walk(directory))
+            {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package Benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import DAO.MessageDAO;
+import DAO.RowMapper;
+import Model.Message;
+import Util.SchemaMigrator;
+
+/**
+ * Maps every row of a 1M row message table to a Message, once with a mapper that reads each column by name and once
+ * with MessageDAO.MESSAGE_MAPPER, which resolves the column indexes once per ResultSet. On every by-name read H2
+ * upper-cases the label and looks it up in a HashMap, so the by-name mapper does that four times per row.
+ * Scores are rows per second. Run with the GC profiler to see the allocation rate and bytes allocated per row
+ * (gc.alloc.rate and gc.alloc.rate.norm):
+ *
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main RowMappingBenchmark -prof gc
+ *
+ * The query runs with lazy execution, as MessageDAO.forEachMessage does, so rows are read as they are mapped. The
+ * table lives in a file database under target/benchmark-db, which is filled once and reused by later runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowMappingBenchmark
+{
+    private static final int ROWS = 1000000;
+    private static final String COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    /**
+     * The mapper MessageDAO used before column indexes were resolved up front.
+     */
+    private static final RowMapper<Message> BY_NAME = row -> new Message(row.getInt("message_id"),
+            row.getInt("posted_by"), row.getString("message_text"), row.getLong("time_posted_epoch"));
+
+    private Connection connection;
+    private PreparedStatement selectAll;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        connection = DriverManager.getConnection("jdbc:h2:" + directory.getAbsolutePath() + "/row-mapping", "sa", "sa");
+        SchemaMigrator.migrate(connection);
+        fill();
+
+        try (PreparedStatement ps = connection.prepareStatement("set lazy_query_execution true"))
+        {
+            ps.execute();
+        }
+        selectAll = connection.prepareStatement("select " + COLUMNS + " from Message");
+        selectAll.setFetchSize(100);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void byName(Blackhole blackhole) throws SQLException
+    {
+        mapAll(BY_NAME, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void byIndex(Blackhole blackhole) throws SQLException
+    {
+        mapAll(MessageDAO.MESSAGE_MAPPER, blackhole);
+    }
+
+    /**
+     * Maps every row the way JdbcTemplate.query does: prepare once, then map each row with the prepared mapper.
+     */
+    private void mapAll(RowMapper<Message> mapper, Blackhole blackhole) throws SQLException
+    {
+        try (ResultSet results = selectAll.executeQuery())
+        {
+            RowMapper<Message> rowMapper = mapper.prepare(results);
+            while (results.next())
+            {
+                blackhole.consume(rowMapper.mapRow(results));
+            }
+        }
+    }
+
+    /**
+     * Inserts one account and ROWS messages unless an earlier run already did.
+     */
+    private void fill() throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement("select count(*) from message");
+             ResultSet result = ps.executeQuery())
+        {
+            result.next();
+            if (result.getInt(1) == ROWS)
+            {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement("delete from message"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("delete from account"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into account (account_id, username, password) values (1, 'user1', 'password')"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into message (" + COLUMNS + ") select x, 1, 'message ' || x, 1669947792 + x from system_range(1, ?)"))
+        {
+            ps.setInt(1, ROWS);
+            ps.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package Benchmark;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import Util.SchemaMigrator;
+
+/**
+ * Compares the statements behind PATCH and DELETE /messages/{message_id} before and after they were folded into
+ * single statements. The legacy update reads the message, updates it and reads it again; the legacy delete reads the
+ * message and then deletes it. The single-statement versions read the affected row back from H2's FINAL TABLE and
+ * OLD TABLE delta tables.
+ *
+ * The delete benchmarks put the row back after deleting it so every invocation finds a message to delete. The
+ * re-insert is the same for both variants, so the difference between them is the cost of the extra select.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateDeleteRoundTripBenchmark
+{
+    private static final int ROWS = 100000;
+    private static final String COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    private Connection connection;
+    private PreparedStatement select;
+    private PreparedStatement update;
+    private PreparedStatement delete;
+    private PreparedStatement updateReturning;
+    private PreparedStatement deleteReturning;
+    private PreparedStatement reinsert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException
+    {
+        File directory = new File("target/benchmark-db");
+        directory.mkdirs();
+        connection = DriverManager.getConnection("jdbc:h2:" + directory.getAbsolutePath() + "/round-trip", "sa", "sa");
+        SchemaMigrator.migrate(connection);
+        fill();
+
+        select = connection.prepareStatement("select " + COLUMNS + " from Message where message_id = ?");
+        update = connection.prepareStatement("update Message set message_text = ? where message_id = ?");
+        delete = connection.prepareStatement("delete from Message where message_id = ?");
+        updateReturning = connection.prepareStatement("select " + COLUMNS + " from final table (update Message set message_text = ? where message_id = ?)");
+        deleteReturning = connection.prepareStatement("select " + COLUMNS + " from old table (delete from Message where message_id = ?)");
+        reinsert = connection.prepareStatement("insert into Message (" + COLUMNS + ") values (?, ?, ?, ?)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException
+    {
+        connection.close();
+    }
+
+    /**
+     * Select, update, select: the three calls the old MessageService.updateMessageByID made.
+     */
+    @Benchmark
+    public void updateLegacy(Blackhole blackhole) throws SQLException
+    {
+        int id = randomID();
+        select.setInt(1, id);
+        read(select, blackhole);
+        update.setString(1, "updated " + id);
+        update.setInt(2, id);
+        blackhole.consume(update.executeUpdate());
+        read(select, blackhole);
+    }
+
+    /**
+     * One update that returns the updated row.
+     */
+    @Benchmark
+    public void updateSingleStatement(Blackhole blackhole) throws SQLException
+    {
+        int id = randomID();
+        updateReturning.setString(1, "updated " + id);
+        updateReturning.setInt(2, id);
+        read(updateReturning, blackhole);
+    }
+
+    /**
+     * Select, delete: the two calls the old MessageService.deleteMessageByID made, followed by a re-insert.
+     */
+    @Benchmark
+    public void deleteLegacy(Blackhole blackhole) throws SQLException
+    {
+        int id = randomID();
+        select.setInt(1, id);
+        read(select, blackhole);
+        delete.setInt(1, id);
+        blackhole.consume(delete.executeUpdate());
+        restore(id);
+    }
+
+    /**
+     * One delete that returns the deleted row, followed by a re-insert.
+     */
+    @Benchmark
+    public void deleteSingleStatement(Blackhole blackhole) throws SQLException
+    {
+        int id = randomID();
+        deleteReturning.setInt(1, id);
+        read(deleteReturning, blackhole);
+        restore(id);
+    }
+
+    private int randomID()
+    {
+        return ThreadLocalRandom.current().nextInt(ROWS) + 1;
+    }
+
+    private void read(PreparedStatement ps, Blackhole blackhole) throws SQLException
+    {
+        try (ResultSet results = ps.executeQuery())
+        {
+            while (results.next())
+            {
+                blackhole.consume(results.getInt(1));
+                blackhole.consume(results.getString(3));
+            }
+        }
+    }
+
+    private void restore(int id) throws SQLException
+    {
+        reinsert.setInt(1, id);
+        reinsert.setInt(2, 1);
+        reinsert.setString(3, "message " + id);
+        reinsert.setLong(4, 1669947792L + id);
+        reinsert.executeUpdate();
+    }
+
+    /**
+     * Inserts one account and ROWS messages unless an earlier run already did.
+     */
+    private void fill() throws SQLException
+    {
+        try (PreparedStatement ps = connection.prepareStatement("select count(*) from message");
+             ResultSet result = ps.executeQuery())
+        {
+            result.next();
+            if (result.getInt(1) == ROWS)
+            {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = connection.prepareStatement("delete from message"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("delete from account"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into account (account_id, username, password) values (1, 'user1', 'password')"))
+        {
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = connection.prepareStatement("insert into message (" + COLUMNS + ") select x, 1, 'message ' || x, 1669947792 + x from system_range(1, ?)"))
+        {
+            ps.setInt(1, ROWS);
+            ps.executeUpdate();
+        }
+    }
+}
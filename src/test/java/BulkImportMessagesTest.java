@@ -0,0 +1,175 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BulkImportMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with a JSON array of one valid message, one
+     * blank message and one message from an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array with the new message_id for the first entry and errors for the other two
+     */
+    @Test
+    public void bulkImportJsonArray() throws IOException, InterruptedException {
+        JsonNode results = postBulk("[" +
+                "{\"posted_by\":1, \"message_text\": \"imported 1\", \"time_posted_epoch\": 1669947793}," +
+                "{\"posted_by\":1, \"message_text\": \"\", \"time_posted_epoch\": 1669947794}," +
+                "{\"posted_by\":2, \"message_text\": \"imported 3\", \"time_posted_epoch\": 1669947795}" +
+                "]");
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(0, results.get(0).get("index").asInt());
+        Assert.assertEquals(2, results.get(0).get("message_id").asInt());
+        Assert.assertTrue(results.get(0).get("error").isNull());
+        Assert.assertTrue(results.get(1).get("message_id").isNull());
+        Assert.assertFalse(results.get(1).get("error").isNull());
+        Assert.assertTrue(results.get(2).get("message_id").isNull());
+        Assert.assertEquals(2, results.get(2).get("index").asInt());
+
+        Assert.assertEquals(new Message(2, 1, "imported 1", 1669947793), getMessage(2));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with newline-delimited JSON where the middle
+     * line is valid JSON but not a message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array where only the middle entry is rejected
+     */
+    @Test
+    public void bulkImportNdjson() throws IOException, InterruptedException {
+        JsonNode results = postBulk(
+                "{\"posted_by\":1, \"message_text\": \"imported 1\", \"time_posted_epoch\": 1669947793}\n" +
+                "{\"posted_by\":\"nobody\"}\n" +
+                "{\"posted_by\":1, \"message_text\": \"imported 3\", \"time_posted_epoch\": 1669947795}\n");
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(2, results.get(0).get("message_id").asInt());
+        Assert.assertTrue(results.get(1).get("message_id").isNull());
+        Assert.assertEquals(1, results.get(1).get("index").asInt());
+        Assert.assertEquals(3, results.get(2).get("message_id").asInt());
+        Assert.assertEquals(2, results.get(2).get("index").asInt());
+
+        Assert.assertEquals(new Message(3, 1, "imported 3", 1669947795), getMessage(3));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk where the second entry is malformed JSON
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array with the first entry imported and a final error for the second
+     */
+    @Test
+    public void bulkImportStopsAtMalformedJson() throws IOException, InterruptedException {
+        JsonNode results = postBulk("[" +
+                "{\"posted_by\":1, \"message_text\": \"imported 1\", \"time_posted_epoch\": 1669947793}," +
+                "{\"posted_by\":1, \"message_text\": " +
+                "]");
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(2, results.get(0).get("message_id").asInt());
+        Assert.assertEquals(1, results.get(1).get("index").asInt());
+        Assert.assertFalse(results.get(1).get("error").isNull());
+
+        Assert.assertEquals(new Message(2, 1, "imported 1", 1669947793), getMessage(2));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/bulk with more entries than
+     * socialmedia.messages.bulk.maxEntries allows
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON array with the entries up to the cap imported and a final error for the first entry past it
+     */
+    @Test
+    public void bulkImportStopsAtMaxEntries() throws IOException, InterruptedException {
+        app.stop();
+        System.setProperty("socialmedia.messages.bulk.maxEntries", "2");
+        try {
+            socialMediaController = new SocialMediaController();
+            app = socialMediaController.startAPI();
+            app.start(8080);
+        } finally {
+            System.clearProperty("socialmedia.messages.bulk.maxEntries");
+        }
+
+        JsonNode results = postBulk(
+                "{\"posted_by\":1, \"message_text\": \"imported 1\", \"time_posted_epoch\": 1669947793}\n" +
+                "{\"posted_by\":1, \"message_text\": \"imported 2\", \"time_posted_epoch\": 1669947794}\n" +
+                "{\"posted_by\":1, \"message_text\": \"imported 3\", \"time_posted_epoch\": 1669947795}\n" +
+                "{\"posted_by\":1, \"message_text\": \"imported 4\", \"time_posted_epoch\": 1669947796}\n");
+
+        Assert.assertEquals(3, results.size());
+        Assert.assertEquals(2, results.get(0).get("message_id").asInt());
+        Assert.assertEquals(3, results.get(1).get("message_id").asInt());
+        Assert.assertEquals(2, results.get(2).get("index").asInt());
+        Assert.assertFalse(results.get(2).get("error").isNull());
+        Assert.assertEquals(3, objectMapper.readTree(webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages")).build(), HttpResponse.BodyHandlers.ofString()).body()).size());
+    }
+
+    private JsonNode postBulk(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/bulk"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body());
+    }
+
+    private Message getMessage(int message_id) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + message_id))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
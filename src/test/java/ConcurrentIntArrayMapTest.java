@@ -0,0 +1,69 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.ConcurrentIntArrayMap;
+
+public class ConcurrentIntArrayMapTest {
+
+    /**
+     * Values should be stored, replaced, updated and removed by key, including keys in different chunks, and the
+     * highest key should not drop when its value is removed.
+     */
+    @Test
+    public void storesValuesByKey() {
+        ConcurrentIntArrayMap<String> map = new ConcurrentIntArrayMap<>();
+        Assert.assertNull(map.get(1));
+        Assert.assertEquals(-1, map.getHighestKey());
+
+        Assert.assertNull(map.put(1, "one"));
+        Assert.assertNull(map.putIfAbsent(200_000, "far"));
+        Assert.assertEquals("one", map.putIfAbsent(1, "uno"));
+        Assert.assertEquals("one", map.put(1, "uno"));
+        Assert.assertEquals("UNO", map.computeIfPresent(1, String::toUpperCase));
+        Assert.assertNull(map.computeIfPresent(2, String::toUpperCase));
+
+        Assert.assertEquals("UNO", map.get(1));
+        Assert.assertEquals("far", map.get(200_000));
+        Assert.assertNull(map.get(-1));
+        Assert.assertNull(map.get(Integer.MAX_VALUE));
+
+        Assert.assertEquals("far", map.remove(200_000));
+        Assert.assertEquals("UNO", map.remove(1));
+        Assert.assertNull(map.remove(1));
+        Assert.assertEquals(200_000, map.getHighestKey());
+    }
+
+    /**
+     * Threads racing to claim the same keys should leave each key with exactly one winner.
+     */
+    @Test
+    public void putIfAbsentHasOneWinnerPerKey() throws InterruptedException {
+        ConcurrentIntArrayMap<Integer> map = new ConcurrentIntArrayMap<>();
+        AtomicInteger wins = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int key = 0; key < 100_000; key++) {
+                    if (map.putIfAbsent(key, thread) == null) {
+                        wins.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(100_000, wins.get());
+        Assert.assertEquals(99_999, map.getHighestKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeKeyIsRejected() {
+        new ConcurrentIntArrayMap<String>().put(-1, "negative");
+    }
+}
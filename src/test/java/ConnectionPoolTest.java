@@ -0,0 +1,157 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+
+public class ConnectionPoolTest {
+    JdbcDataSource dataSource;
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a small pool over a private in-memory database so the tests don't share
+     * connections with the application pool.
+     */
+    @Before
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        pool = new ConnectionPool(dataSource, 1, 2, 200, 100, 0, 50, 2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    /**
+     * Closing a borrowed connection should return its physical connection to the pool instead of closing it.
+     */
+    @Test
+    public void closedConnectionIsReused() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+
+        Assert.assertTrue(first.isClosed());
+        Assert.assertFalse(second.isClosed());
+        Assert.assertEquals(1, pool.getTotalConnections());
+        second.close();
+        Assert.assertEquals(0, pool.getActiveConnections());
+        Assert.assertEquals(1, pool.getIdleConnections());
+    }
+
+    /**
+     * Once maxSize connections are borrowed, getConnection() should wait for the acquire timeout and then fail.
+     */
+    @Test
+    public void borrowingPastMaxSizeTimesOut() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Expected the third borrow to time out");
+        } catch (SQLException e) {
+            Assert.assertEquals(2, pool.getActiveConnections());
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Closing the same connection from several threads at once should return it only once, so the pool still lends
+     * out no more than maxSize connections afterwards.
+     */
+    @Test
+    public void concurrentCloseReturnsConnectionOnce() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            Connection connection = pool.getConnection();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] closers = new Thread[4];
+            for (int j = 0; j < closers.length; j++) {
+                closers[j] = new Thread(() -> {
+                    try {
+                        start.await();
+                        connection.close();
+                    } catch (InterruptedException | SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                closers[j].start();
+            }
+            start.countDown();
+            for (Thread closer : closers) {
+                closer.join();
+            }
+        }
+
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Expected the third borrow to time out");
+        } catch (SQLException e) {
+            Assert.assertEquals(2, pool.getActiveConnections());
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * A connection that has been returned to the pool must not be usable by its previous borrower.
+     */
+    @Test(expected = SQLException.class)
+    public void returnedConnectionRejectsCalls() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.createStatement();
+    }
+
+    /**
+     * Connections above minSize should be closed once they have been idle longer than the idle timeout.
+     */
+    @Test
+    public void idleConnectionsAreEvictedDownToMinSize() throws SQLException, InterruptedException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        first.close();
+        second.close();
+        Assert.assertEquals(2, pool.getTotalConnections());
+
+        Thread.sleep(500);
+        Assert.assertEquals(1, pool.getTotalConnections());
+    }
+
+    /**
+     * Preparing the same SQL twice on a pooled connection should reuse the cached statement, and preparing more
+     * distinct statements than the cache holds should evict the least recently used one.
+     */
+    @Test
+    public void preparedStatementsAreCachedPerConnection() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            try (PreparedStatement ps = connection.prepareStatement("select 1")) {
+                ps.executeQuery().close();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("select 1")) {
+                ps.executeQuery().close();
+            }
+            Assert.assertEquals(1, pool.getStatementCacheHits());
+            Assert.assertEquals(1, pool.getStatementCacheMisses());
+
+            connection.prepareStatement("select 2").close();
+            connection.prepareStatement("select 3").close();
+            Assert.assertEquals(1, pool.getStatementCacheEvictions());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDAO;
+import DAO.MessageDAO;
+import Model.Account;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class ConnectionSoakTest {
+    AccountDAO accountDAO;
+    MessageDAO messageDAO;
+
+    /**
+     * The number of DAO calls to make, set with -Dsoak.requests. Every call borrows and returns a pooled connection.
+     * The default keeps the test to about a second in every build; run the full soak before changing the pool or
+     * JdbcTemplate with mvn test -Dtest=ConnectionSoakTest -Dsoak.requests=1000000.
+     */
+    static final int REQUESTS = Integer.getInteger("soak.requests", 20_000);
+
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDAO = new AccountDAO();
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * Drive a mix of successful and failing reads, writes and streams through the DAOs and check that every one
+     * gives its connection back: the pool should end with nothing borrowed, and the number of open database
+     * sessions should never grow past what it was at the start. The calls are made one at a time, so a pool that
+     * returns every connection always has an idle one to lend and never needs to open another.
+     */
+    @Test
+    public void openSessionsStayFlat() throws Exception {
+        int baseline = openSessions();
+        int peak = 0;
+
+        for (int i = 0; i < REQUESTS; i++) {
+            switch (i % 8) {
+                case 0:
+                    Assert.assertNotNull(messageDAO.getMessageByID(1));
+                    break;
+                case 1:
+                    Assert.assertNotNull(accountDAO.getAccountByUsername("testuser1"));
+                    break;
+                case 2:
+                    if (i % 1000 == 2) {
+                        // duplicate username, so the insert fails and takes the error path
+                        Assert.assertNull(accountDAO.addAccount(new Account("testuser1", "password")));
+                    } else {
+                        Assert.assertNotNull(accountDAO.getAccountByID(1));
+                    }
+                    break;
+                case 3:
+                    Assert.assertNotNull(messageDAO.updateMessageByID(1, "soak " + i));
+                    break;
+                case 4:
+                    Message added = messageDAO.addMessage(new Message(1, "soak", 1669947792));
+                    Assert.assertNotNull(messageDAO.deleteMessageByID(added.getMessage_id()));
+                    break;
+                case 5:
+                    Assert.assertFalse(messageDAO.getMessagesAfter(0, 10).isEmpty());
+                    break;
+                case 6:
+                    messageDAO.forEachMessage(message -> { });
+                    break;
+                default:
+                    Assert.assertNull(messageDAO.getMessageByID(-1));
+                    break;
+            }
+
+            if (i % 1000 == 0) {
+                peak = Math.max(peak, openSessions());
+                Assert.assertEquals(0, ConnectionUtil.getPool().getActiveConnections());
+            }
+        }
+
+        peak = Math.max(peak, openSessions());
+        Assert.assertEquals(0, ConnectionUtil.getPool().getActiveConnections());
+        Assert.assertTrue("open sessions grew to " + peak, peak <= baseline);
+    }
+
+    private int openSessions() throws SQLException {
+        try (Connection connection = ConnectionUtil.getConnection();
+                PreparedStatement ps = connection.prepareStatement("select count(*) from information_schema.sessions");
+                ResultSet result = ps.executeQuery()) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+}
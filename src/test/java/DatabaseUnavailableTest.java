@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.StorageEngine;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class DatabaseUnavailableTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    List<Connection> held = new ArrayList<>();
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web. The tests only run on the H2 engine, since the other engines serve these requests without
+     * the connection pool.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        Assume.assumeTrue(StorageEngine.configured() == StorageEngine.H2);
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        releaseConnections();
+        if (app != null) {
+            app.stop();
+        }
+    }
+
+    /**
+     * While every pooled connection is borrowed, reads, the streamed list of all messages and logins should fail
+     * with 503 once the acquire timeout passes, rather than reporting the message or account as missing. Once
+     * connections are free again the same requests should succeed, so the failures were not cached as misses.
+     */
+    @Test
+    public void poolExhaustionIsServiceUnavailable() throws Exception {
+        for (int i = 0; i < ConnectionUtil.getPool().getMaxSize(); i++) {
+            held.add(ConnectionUtil.getConnection());
+        }
+
+        CompletableFuture<HttpResponse<String>> message = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build());
+        CompletableFuture<HttpResponse<String>> all = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build());
+        CompletableFuture<HttpResponse<String>> login = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+        Assert.assertEquals(503, message.get().statusCode());
+        Assert.assertEquals(503, all.get().statusCode());
+        Assert.assertEquals("", all.get().body());
+        Assert.assertEquals(503, login.get().statusCode());
+
+        releaseConnections();
+
+        HttpResponse<String> messageAgain = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build()).get();
+        Assert.assertEquals(200, messageAgain.statusCode());
+        Assert.assertTrue(messageAgain.body().contains("test message 1"));
+        HttpResponse<String> loginAgain = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build()).get();
+        Assert.assertEquals(200, loginAgain.statusCode());
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpRequest request) throws IOException {
+        return webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void releaseConnections() throws SQLException {
+        for (Connection connection : held) {
+            connection.close();
+        }
+        held.clear();
+    }
+}
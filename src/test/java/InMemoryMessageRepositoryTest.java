@@ -0,0 +1,66 @@
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import DAO.InMemoryMessageRepository;
+import Model.Message;
+
+public class InMemoryMessageRepositoryTest {
+
+    /**
+     * Pages of one account's messages should come out in message_id order, skip other accounts' messages and stop
+     * at the limit.
+     */
+    @Test
+    public void accountPagesFollowMessageIDOrder() {
+        InMemoryMessageRepository repository = new InMemoryMessageRepository();
+        for (int i = 0; i < 10; i++) {
+            repository.addMessage(new Message(i % 2 == 0 ? 1 : 2, "message " + i, 1669947792));
+        }
+
+        List<Message> first = repository.getMessagesByAccountIDAfter(1, 0, 3);
+        List<Message> second = repository.getMessagesByAccountIDAfter(1, first.get(2).getMessage_id(), 3);
+
+        Assert.assertEquals(Arrays.asList(1, 3, 5), Arrays.asList(first.get(0).getMessage_id(), first.get(1).getMessage_id(), first.get(2).getMessage_id()));
+        Assert.assertEquals(2, second.size());
+        Assert.assertEquals(9, second.get(1).getMessage_id());
+        Assert.assertEquals(5, repository.getMessagesByAccountID(2).size());
+    }
+
+    /**
+     * A deleted message should disappear from its account's messages, and updates should keep the poster and time.
+     */
+    @Test
+    public void deleteAndUpdateKeepTheAccountIndexInStep() {
+        InMemoryMessageRepository repository = new InMemoryMessageRepository();
+        Message first = repository.addMessage(new Message(1, "first", 1669947792));
+        Message second = repository.addMessage(new Message(1, "second", 1669947793));
+
+        Assert.assertEquals(first, repository.deleteMessageByID(first.getMessage_id()));
+        Assert.assertNull(repository.deleteMessageByID(first.getMessage_id()));
+        Assert.assertEquals(new Message(second.getMessage_id(), 1, "edited", 1669947793), repository.updateMessageByID(second.getMessage_id(), "edited"));
+        Assert.assertNull(repository.updateMessageByID(first.getMessage_id(), "edited"));
+        Assert.assertEquals(1, repository.getMessagesByAccountID(1).size());
+    }
+
+    /**
+     * A batch containing an ID that is already taken should add nothing.
+     */
+    @Test
+    public void batchWithTakenIDAddsNothing() {
+        InMemoryMessageRepository repository = new InMemoryMessageRepository();
+        Message existing = repository.addMessage(new Message(1, "existing", 1669947792));
+        int[] ids = repository.reserveMessageIDs(2);
+
+        boolean added = repository.addMessages(Arrays.asList(
+                new Message(ids[0], 1, "new", 1669947792),
+                new Message(ids[1], 1, "new", 1669947792),
+                new Message(existing.getMessage_id(), 1, "duplicate", 1669947792)));
+
+        Assert.assertFalse(added);
+        Assert.assertEquals(1, repository.getAllMessages().size());
+        Assert.assertEquals(1, repository.getMessagesByAccountID(1).size());
+    }
+}
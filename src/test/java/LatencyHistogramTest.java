@@ -0,0 +1,65 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+    /**
+     * Percentiles of 1..10000 should be within the histogram's 1.6% precision, and never above the recorded maximum.
+     */
+    @Test
+    public void percentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+
+        Assert.assertEquals(10000, histogram.getTotalCount());
+        Assert.assertEquals(10000, histogram.getMaxValue());
+        Assert.assertEquals(50005000L, histogram.getTotalSum());
+        Assert.assertEquals(5000, histogram.getValueAtPercentile(50), 5000 * 0.016);
+        Assert.assertEquals(9900, histogram.getValueAtPercentile(99), 9900 * 0.016);
+        Assert.assertEquals(10000, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    /**
+     * Small values are recorded exactly, and counts at or below a bound should leave out the bucket it falls in.
+     */
+    @Test
+    public void countAtOrBelowIsCumulative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 128; value++) {
+            histogram.record(value);
+        }
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE);
+
+        Assert.assertEquals(1, histogram.getCountAtOrBelow(0));
+        Assert.assertEquals(100, histogram.getCountAtOrBelow(99));
+        Assert.assertEquals(128, histogram.getCountAtOrBelow(999));
+        Assert.assertEquals(129, histogram.getCountAtOrBelow(1007));
+        Assert.assertEquals(130, histogram.getCountAtOrBelow(LatencyHistogram.MAX_VALUE));
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxValue());
+    }
+
+    /**
+     * Adding one histogram to another should combine their counts, sums and maxima.
+     */
+    @Test
+    public void addCombinesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(20);
+        second.record(3000);
+
+        first.add(second);
+
+        Assert.assertEquals(3, first.getTotalCount());
+        Assert.assertEquals(3030, first.getTotalSum());
+        Assert.assertEquals(3000, first.getMaxValue());
+        Assert.assertEquals(2, first.getCountAtOrBelow(20));
+    }
+}
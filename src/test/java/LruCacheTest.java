@@ -0,0 +1,82 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.LruCache;
+
+public class LruCacheTest {
+
+    /**
+     * A second read of the same key should be answered from the cache without calling the loader.
+     */
+    @Test
+    public void readThroughLoadsOnce() {
+        LruCache<Integer, String> cache = new LruCache<>(100, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        Assert.assertEquals("1", cache.get(1, key -> { loads.incrementAndGet(); return key.toString(); }));
+        Assert.assertEquals("1", cache.get(1, key -> { loads.incrementAndGet(); return key.toString(); }));
+
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getLoadCount());
+    }
+
+    /**
+     * Filling the cache past its size should evict entries rather than grow without bound.
+     */
+    @Test
+    public void sizeIsBounded() {
+        LruCache<Integer, Integer> cache = new LruCache<>(32, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+
+        Assert.assertTrue(cache.size() <= 32);
+        Assert.assertEquals(1000 - cache.size(), cache.getEvictions());
+    }
+
+    /**
+     * An entry past its time-to-live should be loaded again.
+     */
+    @Test
+    public void expiredEntriesAreReloaded() throws InterruptedException {
+        LruCache<Integer, String> cache = new LruCache<>(100, 20);
+        cache.put(1, "old");
+        Thread.sleep(50);
+
+        Assert.assertEquals("new", cache.get(1, key -> "new"));
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * A write that happens while a load is running should win over the loaded value.
+     */
+    @Test
+    public void loadDoesNotOverwriteConcurrentWrite() {
+        LruCache<Integer, String> cache = new LruCache<>(100, 0);
+
+        String loaded = cache.get(1, key -> {
+            cache.put(1, "written");
+            return "loaded";
+        });
+
+        Assert.assertEquals("loaded", loaded);
+        Assert.assertEquals("written", cache.getIfPresent(1, null));
+    }
+
+    /**
+     * A loader that throws should cache nothing, so the next read calls the loader again.
+     */
+    @Test
+    public void failedLoadIsNotCached() {
+        LruCache<Integer, String> cache = new LruCache<>(100, 0);
+
+        Assert.assertThrows(IllegalStateException.class, () -> cache.get(1, key -> { throw new IllegalStateException(); }));
+
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals("1", cache.get(1, key -> key.toString()));
+    }
+}
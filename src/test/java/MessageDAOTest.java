@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class MessageDAOTest {
+    MessageDAO messageDAO;
+
+    /**
+     * Before every test, reset the database.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * Reading more IDs than one statement binds should split them over several statements and still return every
+     * message that exists, in message_id order, skipping deleted ones.
+     */
+    @Test
+    public void getMessagesByIDsSpansSeveralStatements() {
+        List<Integer> expected = new ArrayList<>();
+        int[] ids = new int[600];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = messageDAO.addMessage(new Message(1, "message " + i, 1669947792)).getMessage_id();
+            if (i % 7 == 0) {
+                messageDAO.deleteMessageByID(ids[i]);
+            } else {
+                expected.add(ids[i]);
+            }
+        }
+
+        List<Integer> found = new ArrayList<>();
+        for (Message message : messageDAO.getMessagesByIDs(ids)) {
+            found.add(message.getMessage_id());
+        }
+        Assert.assertEquals(expected, found);
+        Assert.assertEquals(1, messageDAO.getMessagesByIDs(new int[] {ids[1]}).size());
+        Assert.assertTrue(messageDAO.getMessagesByIDs(new int[0]).isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MessageETagTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * GET localhost:8080/messages/1 with the ETag of a previous read should return 304 with no body until the
+     * message is updated, and then 200 with the new text and a new ETag.
+     */
+    @Test
+    public void messageReadIsNotModifiedUntilUpdated() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages/1", null);
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertNotNull(etag);
+
+        HttpResponse<String> cached = get("/messages/1", etag);
+        Assert.assertEquals(304, cached.statusCode());
+        Assert.assertEquals("", cached.body());
+        Assert.assertEquals(etag, cached.headers().firstValue("ETag").orElse(null));
+        Assert.assertEquals(304, get("/messages/1", "\"other\", W/" + etag).statusCode());
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"updated message\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> changed = get("/messages/1", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertTrue(changed.body().contains("updated message"));
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * GET localhost:8080/accounts/1/messages with the ETag of a previous read should return 304 until the account
+     * posts another message, and then 200 with both messages.
+     */
+    @Test
+    public void accountMessagesAreNotModifiedUntilAccountPosts() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/accounts/1/messages", null);
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(304, get("/accounts/1/messages", etag).statusCode());
+
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1, \"message_text\": \"second message\", \"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> changed = get("/accounts/1/messages", etag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertTrue(changed.body().contains("second message"));
+        Assert.assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * A message read once, and so cached as JSON, should not be served again after it is deleted, and neither
+     * should its account's cached message list.
+     */
+    @Test
+    public void deletedMessageIsNotServedFromCache() throws IOException, InterruptedException {
+        Assert.assertTrue(get("/messages/1", null).body().contains("test message 1"));
+        Assert.assertTrue(get("/accounts/1/messages", null).body().contains("test message 1"));
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> message = get("/messages/1", null);
+        Assert.assertEquals(200, message.statusCode());
+        Assert.assertEquals("", message.body());
+        Assert.assertEquals("[]", get("/accounts/1/messages", null).body());
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            builder.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
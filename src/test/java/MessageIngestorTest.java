@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Service.MessageIngestor;
+import Util.ConnectionUtil;
+
+public class MessageIngestorTest {
+    MessageDAO messageDAO;
+    MessageIngestor ingestor;
+
+    /**
+     * Before every test, reset the database so it holds only testuser1 and message 1.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+    }
+
+    @After
+    public void tearDown() {
+        if (ingestor != null) {
+            ingestor.close();
+        }
+    }
+
+    /**
+     * In COMMIT mode every future should complete with a distinct ID once its batch is committed, and every
+     * message should then be readable.
+     */
+    @Test
+    public void commitModeCompletesAfterInsert() {
+        ingestor = new MessageIngestor(messageDAO, MessageIngestor.Durability.COMMIT, 1000, 50, 5, 1000);
+
+        List<CompletableFuture<Message>> futures = submit(200);
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<Message> future : futures) {
+            Message added = future.join();
+            Assert.assertNotNull(added);
+            Assert.assertNotNull(messageDAO.getMessageByID(added.getMessage_id()));
+            ids.add(added.getMessage_id());
+        }
+
+        Assert.assertEquals(200, ids.size());
+        Assert.assertFalse(ids.contains(1));
+        Assert.assertEquals(201, messageDAO.getMessagesByAccountID(1).size());
+    }
+
+    /**
+     * In ENQUEUE mode every future should already be complete with a distinct ID, and the messages should all be
+     * inserted by the time the ingestor is closed.
+     */
+    @Test
+    public void enqueueModeAcknowledgesBeforeInsert() {
+        ingestor = new MessageIngestor(messageDAO, MessageIngestor.Durability.ENQUEUE, 1000, 50, 5, 1000);
+
+        List<CompletableFuture<Message>> futures = submit(200);
+        Set<Integer> ids = new HashSet<>();
+        for (CompletableFuture<Message> future : futures) {
+            Assert.assertTrue(future.isDone());
+            ids.add(future.join().getMessage_id());
+        }
+        ingestor.close();
+
+        Assert.assertEquals(200, ids.size());
+        Assert.assertEquals(201, messageDAO.getMessagesByAccountID(1).size());
+        Assert.assertEquals("test message 1", messageDAO.getMessageByID(1).getMessage_text());
+    }
+
+    /**
+     * While the database is stalled, submits should be rejected once the queue is full instead of queueing
+     * without bound. Everything accepted should still be inserted once the database recovers.
+     */
+    @Test
+    public void fullQueueRejectsSubmits() {
+        CountDownLatch stalled = new CountDownLatch(1);
+        MessageDAO stalledDAO = new MessageDAO() {
+            @Override
+            public boolean addMessages(List<Message> messages) {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.addMessages(messages);
+            }
+        };
+        ingestor = new MessageIngestor(stalledDAO, MessageIngestor.Durability.COMMIT, 2, 1, 0, 10);
+
+        List<CompletableFuture<Message>> accepted = new ArrayList<>();
+        boolean rejected = false;
+        for (int i = 0; i < 10 && !rejected; i++) {
+            try {
+                accepted.add(ingestor.submit(new Message(1, "queued message " + i, 1669947793L + i)));
+            } catch (RejectedExecutionException e) {
+                rejected = true;
+            }
+        }
+        Assert.assertTrue(rejected);
+        Assert.assertTrue(accepted.size() <= 3);
+
+        stalled.countDown();
+        for (CompletableFuture<Message> future : accepted) {
+            Assert.assertNotNull(future.join());
+        }
+    }
+
+    private List<CompletableFuture<Message>> submit(int count) {
+        List<CompletableFuture<Message>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(ingestor.submit(new Message(1, "ingested message " + i, 1669947793L + i)));
+        }
+        return futures;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageLogRepository;
+import Model.Message;
+
+public class MessageLogRepositoryTest {
+    Path directory;
+    MessageLogRepository log;
+
+    /**
+     * Before every test, start from an empty log directory under target.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = Paths.get("target/message-log-test");
+        if (Files.exists(directory)) {
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        log = open();
+    }
+
+    @After
+    public void tearDown() {
+        log.close();
+    }
+
+    /**
+     * Reopening the log should replay adds, updates, deletes and reservations, and keep numbering after the highest
+     * ID ever handed out.
+     */
+    @Test
+    public void reopenedLogRebuildsIndex() throws IOException {
+        Message first = log.addMessage(new Message(1, "first", 1669947792));
+        Message second = log.addMessage(new Message(2, "second", 1669947793));
+        log.addMessage(new Message(1, "third", 1669947794));
+        log.updateMessageByID(first.getMessage_id(), "first edited");
+        log.deleteMessageByID(second.getMessage_id());
+        int[] reserved = log.reserveMessageIDs(5);
+        log.close();
+
+        log = open();
+
+        Assert.assertEquals(new Message(1, 1, "first edited", 1669947792), log.getMessageByID(1));
+        Assert.assertNull(log.getMessageByID(2));
+        Assert.assertEquals(2, log.getMessagesByAccountID(1).size());
+        Assert.assertTrue(log.getMessagesByAccountID(2).isEmpty());
+        Assert.assertEquals(reserved[4] + 1, log.addMessage(new Message(1, "after restart", 1669947795)).getMessage_id());
+    }
+
+    /**
+     * A handler that is still writing a message out should not hold up appends, and every message that existed when
+     * the stream started should still be handed over, in message_id order.
+     */
+    @Test
+    public void streamingDoesNotBlockAppends() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            log.addMessage(new Message(1, "message " + i, 1669947792));
+        }
+        List<Integer> seen = new ArrayList<>();
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            log.forEachMessage(message -> {
+                if (seen.isEmpty()) {
+                    Future<Message> added = writer.submit(() -> log.addMessage(new Message(1, "during stream", 1669947793)));
+                    try {
+                        Assert.assertNotNull(added.get(5, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        throw new AssertionError("Append blocked behind the stream", e);
+                    }
+                }
+                seen.add(message.getMessage_id());
+            });
+        } finally {
+            writer.shutdownNow();
+        }
+        Assert.assertEquals(1001, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            Assert.assertEquals(i + 1, (int) seen.get(i));
+        }
+    }
+
+    /**
+     * Compaction should delete segments that are mostly superseded records without losing any message or bringing
+     * back a deleted one after a restart.
+     */
+    @Test
+    public void compactionReclaimsSegments() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            log.addMessage(new Message(1, "message " + i, 1669947792));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 1; i <= 100; i++) {
+                log.updateMessageByID(i, "round " + round);
+            }
+        }
+        for (int i = 1; i <= 50; i++) {
+            log.deleteMessageByID(i);
+        }
+        int before = log.getSegmentCount();
+
+        log.compact();
+
+        Assert.assertTrue(log.getSegmentCount() < before);
+        Assert.assertEquals(50, log.getAllMessages().size());
+        Assert.assertEquals("round 4", log.getMessageByID(100).getMessage_text());
+
+        log.close();
+        log = open();
+
+        Assert.assertEquals(50, log.getAllMessages().size());
+        Assert.assertNull(log.getMessageByID(1));
+        Assert.assertEquals("round 4", log.getMessageByID(51).getMessage_text());
+    }
+
+    /**
+     * A record whose bytes were only partly written should be dropped on recovery, and the log should keep working
+     * from where the last good record ended.
+     */
+    @Test
+    public void tornRecordIsDiscarded() throws IOException {
+        log.addMessage(new Message(1, "kept", 1669947792));
+        log.addMessage(new Message(1, "torn", 1669947793));
+        log.close();
+
+        try (RandomAccessFile segment = new RandomAccessFile(directory.resolve("segment-0000000001.log").toFile(), "rw")) {
+            // the second record starts after the 8 byte header and the 29 byte first record; corrupt its text
+            segment.seek(8 + 29 + 8 + 17);
+            segment.write('X');
+        }
+        log = open();
+
+        Assert.assertEquals("kept", log.getMessageByID(1).getMessage_text());
+        Assert.assertNull(log.getMessageByID(2));
+        log.addMessage(new Message(1, "appended", 1669947794));
+        log.close();
+        log = open();
+
+        Assert.assertEquals(2, log.getAllMessages().size());
+        Assert.assertEquals("appended", log.getMessagesAfter(1, 10).get(0).getMessage_text());
+    }
+
+    private MessageLogRepository open() throws IOException {
+        return new MessageLogRepository(directory, 4096, false, 0, 50);
+    }
+}
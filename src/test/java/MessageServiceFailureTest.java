@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.DataAccessException;
+import DAO.InMemoryAccountRepository;
+import DAO.InMemoryMessageRepository;
+import DAO.MessageHandler;
+import Model.Account;
+import Model.Message;
+import Service.MessageService;
+
+public class MessageServiceFailureTest {
+    FailingMessageRepository messageRepository;
+    MessageService messageService;
+
+    /**
+     * Before every test, create a MessageService over in-memory repositories holding one account.
+     */
+    @Before
+    public void setUp() {
+        InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+        accountRepository.addAccount(new Account("testuser1", "password"));
+        messageRepository = new FailingMessageRepository();
+        messageService = new MessageService(messageRepository, accountRepository);
+    }
+
+    /**
+     * A read that fails should throw rather than report the message as missing, and should not be cached, so the
+     * next read after the failure returns the message.
+     */
+    @Test
+    public void failedReadIsNotCachedAsMissing() {
+        Message message = messageRepository.addMessage(new Message(1, "test message 1", 1669947792));
+
+        messageRepository.failing = true;
+        Assert.assertThrows(DataAccessException.class, () -> messageService.getMessageByID(message.getMessage_id()));
+        Assert.assertThrows(DataAccessException.class, () -> messageService.getMessageJson(message.getMessage_id()));
+
+        messageRepository.failing = false;
+        Assert.assertEquals(message, messageService.getMessageByID(message.getMessage_id()));
+        Assert.assertTrue(messageService.getMessageJson(message.getMessage_id()).length > 0);
+    }
+
+    /**
+     * A delete or update that fails should throw and leave nothing cached, so a failure is never cached as "message
+     * does not exist". The failing repository applies the write before failing, as a database can when the
+     * connection drops after the commit, so the next read must load the message again rather than keep the old copy.
+     */
+    @Test
+    public void failedWritesAreNotCached() {
+        Message first = messageRepository.addMessage(new Message(1, "test message 1", 1669947792));
+        Message second = messageRepository.addMessage(new Message(1, "test message 2", 1669947792));
+        Assert.assertEquals(first, messageService.getMessageByID(first.getMessage_id()));
+        Assert.assertEquals(second, messageService.getMessageByID(second.getMessage_id()));
+        Assert.assertEquals(2, messageService.getMessagesByAccountID(1).size());
+
+        messageRepository.failing = true;
+        Assert.assertThrows(DataAccessException.class,
+                () -> messageService.updateMessageByID(first.getMessage_id(), new Message(1, "updated", 1669947792)));
+        Assert.assertThrows(DataAccessException.class, () -> messageService.deleteMessageByID(second.getMessage_id()));
+
+        messageRepository.failing = false;
+        Assert.assertEquals("updated", messageService.getMessageByID(first.getMessage_id()).getMessage_text());
+        Assert.assertNull(messageService.getMessageByID(second.getMessage_id()));
+    }
+
+    /**
+     * A failed fill of the account index should leave it unfilled, with account message reads answered by the
+     * repository instead of a partial index, and a later fill should succeed once the repository recovers.
+     */
+    @Test
+    public void failedAccountIndexFillFallsBackToRepository() throws InterruptedException {
+        InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+        accountRepository.addAccount(new Account("testuser1", "password"));
+        messageRepository = new FailingMessageRepository();
+        messageRepository.addMessage(new Message(1, "test message 1", 1669947792));
+        messageRepository.addMessage(new Message(1, "test message 2", 1669947792));
+        messageRepository.failing = true;
+        System.setProperty("socialmedia.messages.accountIndex.retryMillis", "0");
+        try {
+            messageService = new MessageService(messageRepository, accountRepository);
+        } finally {
+            System.clearProperty("socialmedia.messages.accountIndex.retryMillis");
+        }
+
+        while (messageRepository.fills.get() < 2) {
+            Assert.assertEquals(2, messageService.getMessagesByAccountID(1).size());
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, messageRepository.indexedReads.get());
+
+        messageRepository.failing = false;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (messageRepository.indexedReads.get() == 0) {
+            Assert.assertTrue("Account index was never filled", System.currentTimeMillis() < deadline);
+            Assert.assertEquals(2, messageService.getMessagesByAccountID(1).size());
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, messageService.getMessagesByAccountID(1).size());
+    }
+
+    /**
+     * A message acknowledged in ENQUEUE mode whose batch then fails to insert should be forgotten, so it is no longer
+     * served by ID, from the account index or under the ETags it was acknowledged with.
+     */
+    @Test
+    public void lostEnqueuedMessageIsForgotten() throws InterruptedException {
+        InMemoryAccountRepository accountRepository = new InMemoryAccountRepository();
+        accountRepository.addAccount(new Account("testuser1", "password"));
+        Message kept = messageRepository.addMessage(new Message(1, "test message 1", 1669947792));
+        System.setProperty("socialmedia.messages.ingest.enabled", "true");
+        System.setProperty("socialmedia.messages.ingest.durability", "ENQUEUE");
+        try {
+            messageService = new MessageService(messageRepository, accountRepository);
+        } finally {
+            System.clearProperty("socialmedia.messages.ingest.enabled");
+            System.clearProperty("socialmedia.messages.ingest.durability");
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (messageRepository.indexedReads.get() == 0) {
+            Assert.assertTrue("Account index was never filled", System.currentTimeMillis() < deadline);
+            messageService.getMessagesByAccountID(1);
+            Thread.sleep(10);
+        }
+
+        messageRepository.failing = true;
+        messageRepository.insertsHeld = new CountDownLatch(1);
+        Message lost = messageService.addMessage(new Message(1, "lost message", 1669947793));
+        Assert.assertNotNull(lost);
+        Assert.assertEquals(lost, messageService.getMessageByID(lost.getMessage_id()));
+        String messageETag = messageService.getMessageETag(lost.getMessage_id());
+        String accountETag = messageService.getAccountMessagesETag(1);
+        messageRepository.insertsHeld.countDown();
+        messageService.close();
+
+        messageRepository.failing = false;
+        Assert.assertNull(messageService.getMessageByID(lost.getMessage_id()));
+        Assert.assertEquals(List.of(kept), messageService.getMessagesByAccountID(1));
+        Assert.assertNotEquals(messageETag, messageService.getMessageETag(lost.getMessage_id()));
+        Assert.assertNotEquals(accountETag, messageService.getAccountMessagesETag(1));
+    }
+
+    /**
+     * An in-memory repository whose operations fail like a database that is down while failing is set. Updates and
+     * deletes are applied before they fail, and batch inserts fail without inserting anything. Batch inserts wait
+     * for insertsHeld, if it is set. Like a database it reports no account index of its own, so the service
+     * keeps one. It counts scans of every message and reads by message ID list, which only that index makes.
+     */
+    static class FailingMessageRepository extends InMemoryMessageRepository {
+        volatile boolean failing;
+        volatile CountDownLatch insertsHeld;
+        AtomicInteger fills = new AtomicInteger();
+        AtomicInteger indexedReads = new AtomicInteger();
+
+        @Override
+        public boolean indexesMessagesByAccount() {
+            return false;
+        }
+
+        @Override
+        public void forEachMessage(MessageHandler handler) throws IOException {
+            fills.incrementAndGet();
+            failIfFailing();
+            super.forEachMessage(handler);
+        }
+
+        @Override
+        public List<Message> getMessagesByIDs(int[] message_ids) {
+            indexedReads.incrementAndGet();
+            return super.getMessagesByIDs(message_ids);
+        }
+
+        @Override
+        public boolean addMessages(List<Message> messages) {
+            if (insertsHeld != null) {
+                try {
+                    insertsHeld.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            failIfFailing();
+            return super.addMessages(messages);
+        }
+
+        @Override
+        public Message getMessageByID(int message_id) {
+            failIfFailing();
+            return super.getMessageByID(message_id);
+        }
+
+        @Override
+        public Message updateMessageByID(int message_id, String message_text) {
+            Message updated = super.updateMessageByID(message_id, message_text);
+            failIfFailing();
+            return updated;
+        }
+
+        @Override
+        public Message deleteMessageByID(int message_id) {
+            Message deleted = super.deleteMessageByID(message_id);
+            failIfFailing();
+            return deleted;
+        }
+
+        void failIfFailing() {
+            if (failing) {
+                throw new DataAccessException("Simulated failure", null);
+            }
+        }
+    }
+}
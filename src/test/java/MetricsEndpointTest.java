@@ -0,0 +1,86 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsEndpointTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * After reading a message, GET localhost:8080/metrics should report the read under its route pattern with its
+     * status code and latency, the DAO query behind it, and the pool and cache gauges, in Prometheus text format.
+     */
+    @Test
+    public void metricsReportRequestsQueriesAndPool() throws IOException, InterruptedException {
+        HttpRequest read = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        Assert.assertEquals(200, webClient.send(read, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body, body.contains("# TYPE socialmedia_http_requests_total counter"));
+        Assert.assertTrue(body, body.matches("(?s).*socialmedia_http_requests_total\\{method=\"GET\",route=\"messages/\\{message_id}\",status=\"200\"} [1-9].*"));
+        Assert.assertTrue(body, body.contains("socialmedia_http_request_duration_seconds_bucket{method=\"GET\",route=\"messages/{message_id}\",le=\"+Inf\"}"));
+        Assert.assertTrue(body, body.contains("socialmedia_db_query_duration_seconds_count{operation=\"MessageDAO.getMessageByID\"}"));
+        Assert.assertTrue(body, body.contains("socialmedia_db_pool_connections{state=\"active\"}"));
+        Assert.assertTrue(body, body.contains("socialmedia_cache_requests_total{cache=\"messages\",result=\"miss\"}"));
+    }
+
+    /**
+     * Requests that match no endpoint should be counted together rather than one series per path.
+     */
+    @Test
+    public void unmatchedRequestsShareOneRoute() throws IOException, InterruptedException {
+        HttpRequest missing = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/no/such/path"))
+                .build();
+        Assert.assertEquals(404, webClient.send(missing, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        String body = webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+
+        Assert.assertTrue(body, body.contains("route=\"unmatched\",status=\"404\""));
+        Assert.assertFalse(body, body.contains("/no/such/path"));
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class PaginateMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, create a new webClient and ObjectMapper
+     * for interacting locally on the web, and post two more messages so there are three to page through.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        postMessage("test message 2", 1669947793);
+        postMessage("test message 3", 1669947794);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2 and then following the next cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the first two messages, then of the last message
+     *  X-Next-Cursor: 2 on the first page, absent on the last page
+     */
+    @Test
+    public void getAllMessagesFollowsCursor() throws IOException, InterruptedException {
+        HttpResponse<String> firstPage = get("http://localhost:8080/messages?limit=2");
+        Assert.assertEquals(200, firstPage.statusCode());
+        Assert.assertEquals("2", firstPage.headers().firstValue("X-Next-Cursor").orElse(null));
+
+        List<Message> expectedFirst = new ArrayList<>();
+        expectedFirst.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedFirst.add(new Message(2, 1, "test message 2", 1669947793));
+        Assert.assertEquals(expectedFirst, readMessages(firstPage));
+
+        HttpResponse<String> lastPage = get("http://localhost:8080/messages?after=2&limit=2");
+        Assert.assertEquals(200, lastPage.statusCode());
+        Assert.assertFalse(lastPage.headers().firstValue("X-Next-Cursor").isPresent());
+
+        List<Message> expectedLast = new ArrayList<>();
+        expectedLast.add(new Message(3, 1, "test message 3", 1669947794));
+        Assert.assertEquals(expectedLast, readMessages(lastPage));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?after=1&limit=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the second message posted by the account
+     *  X-Next-Cursor: 2
+     */
+    @Test
+    public void getMessagesForUserStartsAfterCursor() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/accounts/1/messages?after=1&limit=1");
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("2", response.headers().firstValue("X-Next-Cursor").orElse(null));
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947793));
+        Assert.assertEquals(expectedResult, readMessages(response));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesInvalidLimit() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/messages?limit=0");
+        Assert.assertEquals(400, response.statusCode());
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Message> readMessages(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private void postMessage(String text, long timePosted) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePosted + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
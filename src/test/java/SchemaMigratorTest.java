@@ -0,0 +1,69 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SchemaMigrator;
+
+public class SchemaMigratorTest {
+    Connection connection;
+
+    /**
+     * Before every test, open a connection to a new, empty in-memory database.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migratortest", "sa", "sa");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Migrating an empty database should create the tables and record every version. Migrating it again should
+     * apply nothing and keep the existing data.
+     */
+    @Test
+    public void migrateIsRepeatable() throws SQLException {
+        SchemaMigrator.migrate(connection);
+        try (PreparedStatement ps = connection.prepareStatement("insert into account (username, password) values ('testuser1', 'password')")) {
+            ps.executeUpdate();
+        }
+
+        SchemaMigrator.migrate(connection);
+
+        Assert.assertEquals(2, count("select count(*) from schema_version"));
+        Assert.assertEquals(1, count("select count(*) from account"));
+    }
+
+    /**
+     * Migrating to a target version should stop there and leave later migrations for the next run.
+     */
+    @Test
+    public void migrateStopsAtTargetVersion() throws SQLException {
+        SchemaMigrator.migrate(connection, 1);
+        Assert.assertEquals(1, count("select max(version) from schema_version"));
+        Assert.assertEquals(1, count("select count(*) from information_schema.indexes where index_name = 'MESSAGE_POSTED_BY_MESSAGE_ID'"));
+        Assert.assertEquals(0, count("select count(*) from information_schema.sequences where sequence_name = 'MESSAGE_ID_SEQ'"));
+
+        SchemaMigrator.migrate(connection);
+        Assert.assertEquals(2, count("select max(version) from schema_version"));
+        Assert.assertEquals(1, count("select count(*) from information_schema.sequences where sequence_name = 'MESSAGE_ID_SEQ'"));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet result = ps.executeQuery()) {
+            result.next();
+            return result.getInt(1);
+        }
+    }
+}
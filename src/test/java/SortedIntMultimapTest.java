@@ -0,0 +1,56 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.SortedIntMultimap;
+
+public class SortedIntMultimapTest {
+
+    /**
+     * Values added out of order should come back sorted, without duplicates, and removed values should be gone.
+     */
+    @Test
+    public void valuesStaySortedAndUnique() {
+        SortedIntMultimap map = new SortedIntMultimap();
+        for (int value : new int[] {5, 1, 9, 3, 7, 3}) {
+            map.add(1, value);
+        }
+        Assert.assertFalse(map.add(1, 9));
+        Assert.assertTrue(map.remove(1, 5));
+        Assert.assertFalse(map.remove(1, 5));
+
+        Assert.assertArrayEquals(new int[] {1, 3, 7, 9}, map.get(1));
+        Assert.assertEquals(4, map.size());
+    }
+
+    /**
+     * getAfter should start after the cursor whether or not the cursor is itself a value, and stop at the limit.
+     */
+    @Test
+    public void getAfterPagesFromCursor() {
+        SortedIntMultimap map = new SortedIntMultimap();
+        for (int value = 2; value <= 20; value += 2) {
+            map.add(3, value);
+        }
+
+        Assert.assertArrayEquals(new int[] {2, 4, 6}, map.getAfter(3, 0, 3));
+        Assert.assertArrayEquals(new int[] {8, 10}, map.getAfter(3, 6, 2));
+        Assert.assertArrayEquals(new int[] {8, 10}, map.getAfter(3, 7, 2));
+        Assert.assertArrayEquals(new int[] {18, 20}, map.getAfter(3, 16, 100));
+        Assert.assertArrayEquals(new int[0], map.getAfter(3, 20, 100));
+    }
+
+    /**
+     * Keys with no values, including ones past every key added so far, should read as empty.
+     */
+    @Test
+    public void unknownKeysAreEmpty() {
+        SortedIntMultimap map = new SortedIntMultimap();
+        map.add(1000, 1);
+        map.remove(1000, 1);
+
+        Assert.assertArrayEquals(new int[0], map.get(1000));
+        Assert.assertArrayEquals(new int[0], map.get(5));
+        Assert.assertArrayEquals(new int[0], map.get(1000000));
+        Assert.assertArrayEquals(new int[0], map.get(-1));
+    }
+}
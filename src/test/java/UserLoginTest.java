@@ -119,4 +119,27 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/login with no username
+     * 
+     * Expected Response:
+     *  Status Code: 401
+     *  Response Body: 
+     */
+    @Test
+    public void loginMissingUsername() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(401, status);
+        Assert.assertEquals("", response.body().toString());
+
+    }
 }
@@ -0,0 +1,38 @@
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.VersionTable;
+
+public class VersionTableTest {
+
+    /**
+     * Every bump should change the key's version, and keys in other stripes should keep theirs.
+     */
+    @Test
+    public void bumpChangesOnlyTheKeysStripe() {
+        VersionTable versions = new VersionTable(4);
+        Assert.assertEquals(0, versions.get(1));
+
+        versions.bump(1);
+        long first = versions.get(1);
+        versions.bump(1);
+
+        Assert.assertNotEquals(0, first);
+        Assert.assertNotEquals(first, versions.get(1));
+        Assert.assertEquals(0, versions.get(2));
+    }
+
+    /**
+     * Keys that share a stripe bump each other, so neither keeps a version from before the other's write.
+     */
+    @Test
+    public void keysSharingAStripeBumpEachOther() {
+        VersionTable versions = new VersionTable(3);
+        long before = versions.get(1);
+
+        versions.bump(5);
+
+        Assert.assertNotEquals(before, versions.get(1));
+        Assert.assertEquals(versions.get(5), versions.get(1));
+    }
+}